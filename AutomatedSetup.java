@@ -1,5 +1,7 @@
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
 
 public class AutomatedSetup {
@@ -10,7 +12,11 @@ public class AutomatedSetup {
     private int minPackets = 0;
     private int maxPackets = 0;
     private double battery = 0.0;
-    List<Node> nodeList; 
+    private boolean useSpatialIndex = true;
+    private NetworkGenerator.Layout layout = NetworkGenerator.Layout.UNIFORM;
+    private long graphBuildNanos = 0;
+    private Random rand = new Random();
+    private SimulationContext context;
 
     public AutomatedSetup() {}
 
@@ -35,42 +41,71 @@ public class AutomatedSetup {
         scan.close();
     }
 
+    // Same settings as the prompts above, for setting up a network without any input 
+    public void setVariables(int width, int length, int numNodes, int transmissionRange, int minPackets, int maxPackets, double battery){
+        this.width = width;
+        this.length = length;
+        this.numNodes = numNodes;
+        this.transmissionRange = transmissionRange;
+        this.minPackets = minPackets;
+        this.maxPackets = maxPackets;
+        this.battery = battery;
+    }
+
 
-     public ListGraph createNetwork() {  
-        ListGraph graph = new ListGraph(numNodes);
+     public NetworkGraph createNetwork() {  
+        NetworkGraph graph;
 
-        // Existing network creation logic
-        nodeList = new ArrayList<>(numNodes);
-        for (int i = 1; i <= numNodes; i++) { 
-            Node newNode = new Node(i, width, length, minPackets, maxPackets);
-            nodeList.add(newNode);
+        // Nodes come from NetworkGenerator, seeded from this setup's generator so setSeed still reproduces a network 
+        context = new SimulationContext(rand);
+        MappedNetworkLoader.NetworkColumns columns;
+        try {
+            columns = new NetworkGenerator().setNumNodes(numNodes).setField(width, length)
+                .setPackets(minPackets, maxPackets).setLayout(layout).setSeed(rand.nextLong()).generate();
+        } catch (IOException e) {
+            // Nothing is written to disk when generating in memory
+            throw new UncheckedIOException(e);
+        }
+        for (int i = 0; i < columns.size(); i++) { 
+            context.addNode(new Node(columns.getIds()[i], columns.getXs()[i], columns.getYs()[i], columns.getPackets()[i]));
         }
 
-        for (int i = 0; i < numNodes; i++) {
-            for (int j = i + 1; j < numNodes; j++) {
-                if (nodeList.get(i).getDistance(nodeList.get(j)) <= transmissionRange) {
-                    graph.addEdge(nodeList.get(i), nodeList.get(j));
-                }
-            }
+        long startTime = System.nanoTime();
+        if (useSpatialIndex) {
+            graph = new CSRGraph(context, transmissionRange);
+        } else {
+            ListGraph listGraph = new ListGraph(context);
+            listGraph.addEdgesInRange(transmissionRange, false);
+            graph = listGraph;
         }
+        context.setGraph(graph);
 
         for (int i = 1; i <= numNodes; i++) {
             int prize = graph.calculatePrize(i, true);
-            Node node = Node.getNodeById(i); 
+            Node node = context.getNode(i); 
             node.setPrize(prize);
         }
+        graphBuildNanos = System.nanoTime() - startTime;
+        System.out.println(String.format("Graph built in %.3f ms (%s)", getGraphBuildTime(), useSpatialIndex ? "spatial grid" : "nested loop"));
 
         return graph; 
     }
 
 
     public Robot createRobot(){
-        Robot robot = new Robot(battery, nodeList);
-        robot.setFeasibleNodes();
-        return robot; 
+        return new Robot(context, battery); 
     }
     public List<Node> getNodeList(){
-        return nodeList; 
+        return context.getNodeList(); 
+    }
+
+    public SimulationContext getContext(){
+        return context;
+    }
+
+    // Fixes the seed used to place nodes & assign packets so a network can be reproduced 
+    public void setSeed(long seed){
+        rand = new Random(seed);
     }
 
     public int getWidth(){
@@ -80,4 +115,18 @@ public class AutomatedSetup {
     public int getLength(){ 
         return length; 
     }
+
+    // How the nodes are spread over the field, uniform unless set 
+    public void setLayout(NetworkGenerator.Layout layout){
+        this.layout = layout;
+    }
+
+    public void setUseSpatialIndex(boolean useSpatialIndex){
+        this.useSpatialIndex = useSpatialIndex;
+    }
+
+    // Time spent building the graph & initial prizes, in milliseconds 
+    public double getGraphBuildTime(){
+        return graphBuildNanos / 1_000_000.0;
+    }
 }
@@ -6,6 +6,12 @@ import java.util.List;
 /**
  * This class provides functionality to run multiple simulations
  * with different battery levels and network configurations.
+ * The runs are independent, so they are spread over a ParallelSweep;
+ * pass the number of threads as the first argument (defaults to every core).
+ * With -Dexport.stream=true results are written to the CSV as they finish.
+ * Each network is loaded once and shared by every battery level through a
+ * NetworkSnapshot.Cache. With -Dresult.cache=DIR, runs that were already done
+ * are read back from a ResultCache instead.
  */
 public class BatchTester {
     
@@ -21,68 +27,169 @@ public class BatchTester {
         
         // Create exporter
         DataExporter exporter = new DataExporter();
+        if (DataExporter.streamingRequested()) {
+            try {
+                exporter.streamTo("batch_test_results.csv");
+            } catch (IOException e) {
+                System.out.println("Error opening batch_test_results.csv: " + e.getMessage());
+                return;
+            }
+        }
+        
+        ParallelSweep sweep = args.length > 0 ? new ParallelSweep(Integer.parseInt(args[0])) : new ParallelSweep();
+        
+        // Optional pictures of every route, see RouteSnapshotExporter
+        RouteSnapshotExporter snapshots;
+        try {
+            snapshots = RouteSnapshotExporter.configured(sweep.getParallelism());
+        } catch (IOException e) {
+            System.out.println("Error creating the snapshot directory: " + e.getMessage());
+            return;
+        }
+        
+        // Optional results of earlier runs, see ResultCache
+        ResultCache results;
+        try {
+            results = ResultCache.configured();
+        } catch (IOException e) {
+            System.out.println("Error opening the result cache: " + e.getMessage());
+            return;
+        }
         
-        // Run simulations for each battery level and network
+        // One job per battery level and network, in the order the results are exported
+        NetworkSnapshot.Cache networks = new NetworkSnapshot.Cache();
+        List<ParallelSweep.Job> jobs = new ArrayList<>();
         for (double battery : batteryLevels) {
-            System.out.println("Running simulations for battery level: " + battery + "Wh");
-            
             for (String networkFile : networkFiles) {
-                try {
-                    // Load the network
-                    String fullFilePath = "Networks/" + networkFile;
-                    InputNetwork inputNetwork = new InputNetwork(fullFilePath, transmissionRange);
-                    
-                    // Set up the simulation
-                    ListGraph graph = inputNetwork.getGraph();
-                    List<Node> nodeList = inputNetwork.getNodeList();
-                    Robot robot = new Robot(battery, new ArrayList<>(nodeList));
-                    robot.setFeasibleNodes();
-                    
-                    // Run the algorithm
-                    System.out.println("  Running " + networkFile + " with " + battery + "Wh...");
-                    long startTime = System.currentTimeMillis();
-                    
-                    List<Node> feasibleNodes = robot.getFeasibleNodes();
-                    while (feasibleNodes.size() != 0) {
-                        robot.findBestPCR();
-                        robot.moveRobotToNode(robot.getGreatestNode());
-                        graph.updatePrizes(robot.getGreatestNode().getNetwork());
-                        robot.setFeasibleNodes();
-                        feasibleNodes = robot.getFeasibleNodes();
+                int jobIndex = jobs.size();
+                jobs.add(() -> runSimulation(networks, networkFile, battery, transmissionRange, snapshots, results, jobIndex));
+            }
+        }
+        
+        System.out.println("Running " + jobs.size() + " simulations on " + sweep.getParallelism() + " threads");
+        try {
+            sweep.run(jobs, new ParallelSweep.ResultHandler() {
+                private void printBatteryHeader(int jobIndex) {
+                    if (jobIndex % networkFiles.length == 0) {
+                        System.out.println("Running simulations for battery level: " + batteryLevels[jobIndex / networkFiles.length] + "Wh");
                     }
-                    
-                    robot.returnHome();
-                    
-                    long computationalTime = System.currentTimeMillis() - startTime;
-                    
-                    // Add result to exporter
-                    DataExporter.SimulationResult result = new DataExporter.SimulationResult(
-                        networkFile,
-                        robot.getTotalPackets(),
-                        robot.getTotalDistance(),
-                        computationalTime,
-                        battery
-                    );
-                    
+                }
+
+                public void onResult(int jobIndex, DataExporter.SimulationResult result) {
+                    printBatteryHeader(jobIndex);
                     exporter.addResult(result);
-                    
-                    System.out.println("    Completed: " + result.getDataPackets() + " packets, " + 
+                    System.out.println("  " + result.getNetworkName() + " with " + result.getBatteryLevel() + "Wh completed: " + 
+                                      result.getDataPackets() + " packets, " + 
                                       String.format("%.2f", result.getDistanceTraveled()) + " distance, " +
                                       result.getComputationalTime() + "ms");
-                    
-                } catch (FileNotFoundException e) {
-                    System.out.println("  Error: Could not find network file " + networkFile);
                 }
+
+                public void onError(int jobIndex, Exception error) {
+                    printBatteryHeader(jobIndex);
+                    String networkFile = networkFiles[jobIndex % networkFiles.length];
+                    if (error instanceof FileNotFoundException) {
+                        System.out.println("  Error: Could not find network file " + networkFile);
+                    } else {
+                        System.out.println("  Error: Simulation of " + networkFile + " failed: " + error);
+                    }
+                }
+            });
+        } catch (InterruptedException e) {
+            System.out.println("Simulations interrupted. Exiting.");
+            return;
+        }
+        
+        if (results != null) {
+            System.out.println(results.getHits() + " results read from the cache, " + results.getMisses() + " simulated");
+        }
+        
+        if (snapshots != null) {
+            try {
+                snapshots.close();
+                System.out.println(snapshots.getWrittenCount() + " route snapshots written");
+            } catch (IOException e) {
+                System.out.println("Error writing route snapshots: " + e.getMessage());
             }
         }
         
         // Calculate statistics and export to CSV
-        exporter.calculateAllStatistics();
         try {
-            exporter.exportToCSV("batch_test_results.csv");
+            if (exporter.isStreaming()) {
+                exporter.finishStreaming();
+            } else {
+                exporter.calculateAllStatistics();
+                exporter.exportToCSV("batch_test_results.csv");
+            }
             System.out.println("Results exported to batch_test_results.csv");
         } catch (IOException e) {
             System.out.println("Error exporting results: " + e.getMessage());
         }
     }
+
+    // Checks out a copy of one network, runs the greedy algorithm on it & returns the result, unless the result cache has it 
+    private static DataExporter.SimulationResult runSimulation(NetworkSnapshot.Cache networks, String networkFile, double battery, int transmissionRange,
+                                                               RouteSnapshotExporter snapshots, ResultCache results, int jobIndex) throws IOException {
+        String fullFilePath = "Networks/" + networkFile;
+        List<Integer> route = new ArrayList<>();
+        DataExporter.SimulationResult result = null;
+        String key = null;
+        if (results != null) {
+            key = results.key(fullFilePath, transmissionRange, battery, ResultCache.greedyAlgorithm());
+            result = results.get(key, networkFile, battery, route);
+        }
+        
+        if (result == null) {
+            // Load the network, or reuse it if another battery level already did
+            NetworkSnapshot snapshot = networks.get(fullFilePath, transmissionRange);
+            SimulationContext context = snapshot.acquire();
+            try {
+                result = runSimulation(context, networkFile, battery, route);
+                snapshot.recordLoadTimes(result.getMetrics(), jobIndex);
+            } finally {
+                snapshot.release(context);
+            }
+            if (results != null) {
+                results.put(key, result, route);
+            }
+        }
+        
+        if (snapshots != null) {
+            String name = networkFile.replaceFirst("\\.[^.]*$", "");
+            snapshots.submit(String.format("%.0fWh_%s", battery, name), networks.get(fullFilePath, transmissionRange), route);
+        }
+        return result;
+    }
+    
+    // Runs the greedy on a checked-out context; the node IDs of the route are added to route 
+    private static DataExporter.SimulationResult runSimulation(SimulationContext context, String networkFile, double battery, List<Integer> route) {
+        // Set up the simulation
+        Robot robot = new Robot(context, battery);
+        
+        // Run the algorithm
+        long startTime = System.nanoTime();
+        
+        Node nextNode = robot.selectNextNode();
+        while (nextNode != null) {
+            robot.moveRobotToNode(nextNode);
+            nextNode = robot.selectNextNode();
+        }
+        
+        robot.returnHome();
+        
+        // Optional local search on the finished route, see RouteImprover 
+        if (RouteImprover.configuredBudget() > 0) {
+            new RouteImprover(RouteImprover.configuredBudget()).improve(robot);
+        }
+        
+        long computationalTime = (System.nanoTime() - startTime) / 1_000_000;
+        route.addAll(RouteSnapshotExporter.routeIds(robot));
+        
+        return new DataExporter.SimulationResult(
+            networkFile,
+            robot.getTotalPackets(),
+            robot.getTotalDistance(),
+            computationalTime,
+            battery
+        ).setMetrics(robot.getMetrics());
+    }
 }
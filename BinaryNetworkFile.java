@@ -0,0 +1,250 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Versioned binary form of a network file (.lnet), so a network can be opened
+ * without parsing text or, optionally, rebuilding its graph.
+ *
+ * Layout, little-endian:
+ *   header (64 bytes): magic "LREUNET\0", int version, int flags, int node count,
+ *                      int transmission range (-1 without adjacency), long number of
+ *                      adjacency entries, zero padding
+ *   node columns:      int ids[n], int xs[n], int ys[n], int packets[n]
+ *   adjacency (flag):  int offsets[n+1], int targets[e], float distances[e]
+ *                      (the arrays of a CSRGraph built for that transmission range)
+ *
+ * Reading maps the file and hands out IntBuffer/FloatBuffer views straight onto
+ * the mapped bytes, so opening a file copies nothing.
+ *
+ * Usage: java BinaryNetworkFile convert [--range R] [--out dir] <network.txt>...
+ *        java BinaryNetworkFile info <network.lnet>...
+ */
+public class BinaryNetworkFile {
+    public static final String EXTENSION = ".lnet";
+    public static final int VERSION = 1;
+    private static final byte[] MAGIC = {'L', 'R', 'E', 'U', 'N', 'E', 'T', 0};
+    private static final int HEADER_SIZE = 64;
+    private static final int FLAG_ADJACENCY = 1;
+
+    private MappedByteBuffer bytes;
+    private int version;
+    private int numNodes;
+    private int transmissionRange;
+    private long adjacencyEntries;
+    private boolean hasAdjacency;
+
+    private BinaryNetworkFile(MappedByteBuffer bytes, String filename) throws IOException {
+        this.bytes = bytes;
+        bytes.order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.limit() < HEADER_SIZE) {
+            throw new IOException(filename + " is too short to be a binary network file");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes.get(i) != MAGIC[i]) {
+                throw new IOException(filename + " is not a binary network file");
+            }
+        }
+        version = bytes.getInt(8);
+        if (version != VERSION) {
+            throw new IOException(filename + " has format version " + version + ", expected " + VERSION);
+        }
+        hasAdjacency = (bytes.getInt(12) & FLAG_ADJACENCY) != 0;
+        numNodes = bytes.getInt(16);
+        transmissionRange = bytes.getInt(20);
+        adjacencyEntries = bytes.getLong(24);
+        long expectedSize = HEADER_SIZE + 16L * numNodes + (hasAdjacency ? 4L * (numNodes + 1) + 8L * adjacencyEntries : 0);
+        if (bytes.limit() != expectedSize) {
+            throw new IOException(filename + " is truncated or corrupt (" + bytes.limit() + " bytes, expected " + expectedSize + ")");
+        }
+    }
+
+    // Maps the file read-only; the views below stay valid as long as this object is reachable
+    public static BinaryNetworkFile open(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(filename + " is larger than 2 GB and can't be mapped in one piece");
+            }
+            return new BinaryNetworkFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), filename);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(filename + " (No such file or directory)");
+        }
+    }
+
+    public int getNumNodes() { return numNodes; }
+    public boolean hasAdjacency() { return hasAdjacency; }
+    public int getTransmissionRange() { return transmissionRange; }
+
+    public IntBuffer getIds() { return intView(HEADER_SIZE, numNodes); }
+    public IntBuffer getXs() { return intView(HEADER_SIZE + 4L * numNodes, numNodes); }
+    public IntBuffer getYs() { return intView(HEADER_SIZE + 8L * numNodes, numNodes); }
+    public IntBuffer getPackets() { return intView(HEADER_SIZE + 12L * numNodes, numNodes); }
+
+    public IntBuffer getOffsets() {
+        return intView(adjacencyStart(), numNodes + 1);
+    }
+
+    public IntBuffer getTargets() {
+        return intView(adjacencyStart() + 4L * (numNodes + 1), (int) adjacencyEntries);
+    }
+
+    public FloatBuffer getDistances() {
+        ByteBuffer slice = slice(adjacencyStart() + 4L * (numNodes + 1) + 4L * adjacencyEntries, 4L * adjacencyEntries);
+        return slice.asFloatBuffer();
+    }
+
+    private long adjacencyStart() {
+        if (!hasAdjacency) {
+            throw new IllegalStateException("This network file was written without adjacency");
+        }
+        return HEADER_SIZE + 16L * numNodes;
+    }
+
+    private IntBuffer intView(long position, int count) {
+        return slice(position, 4L * count).asIntBuffer();
+    }
+
+    private ByteBuffer slice(long position, long length) {
+        ByteBuffer slice = bytes.duplicate();
+        slice.position((int) position);
+        slice.limit((int) (position + length));
+        return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+     * Writes the node columns and, when a graph is given, its adjacency for the
+     * given transmission range. The data goes through one reusable direct buffer
+     */
+    public static void write(String filename, MappedNetworkLoader.NetworkColumns columns, CSRGraph graph, int transmissionRange) throws IOException {
+        int n = columns.size();
+        long entries = graph == null ? 0 : graph.getTargets().length;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(header(n, graph != null, transmissionRange, entries));
+
+            writeInts(channel, buffer, columns.getIds(), n);
+            writeInts(channel, buffer, columns.getXs(), n);
+            writeInts(channel, buffer, columns.getYs(), n);
+            writeInts(channel, buffer, columns.getPackets(), n);
+            if (graph != null) {
+                writeInts(channel, buffer, graph.getOffsets(), graph.getOffsets().length);
+                writeInts(channel, buffer, graph.getTargets(), graph.getTargets().length);
+                float[] distances = graph.getDistances();
+                for (float distance : distances) {
+                    if (buffer.remaining() < 4) {
+                        flush(channel, buffer);
+                    }
+                    buffer.putFloat(distance);
+                }
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    // The 64 header bytes, ready to be written
+    static ByteBuffer header(int numNodes, boolean adjacency, int transmissionRange, long adjacencyEntries) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(adjacency ? FLAG_ADJACENCY : 0);
+        header.putInt(numNodes);
+        header.putInt(adjacency ? transmissionRange : -1);
+        header.putLong(adjacencyEntries);
+        header.position(HEADER_SIZE);
+        header.flip();
+        return header;
+    }
+
+    /*
+     * File position of entry index in a node column (0 ids, 1 xs, 2 ys, 3 packets),
+     * so the columns of a file without adjacency can be written in pieces
+     */
+    static long columnPosition(int column, int numNodes, int index) {
+        return HEADER_SIZE + 4L * ((long) column * numNodes + index);
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values, int count) throws IOException {
+        int written = 0;
+        while (written < count) {
+            if (buffer.remaining() < 4) {
+                flush(channel, buffer);
+            }
+            int batch = Math.min(count - written, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(values, written, batch);
+            buffer.position(buffer.position() + batch * 4);
+            written += batch;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Converts one text network to binary, with the adjacency for the range if it is not null
+    public static String convert(String textFile, Integer transmissionRange, String outputDirectory) throws IOException {
+        MappedNetworkLoader.NetworkColumns columns = MappedNetworkLoader.load(textFile);
+        CSRGraph graph = null;
+        if (transmissionRange != null) {
+            SimulationContext context = new SimulationContext();
+            for (int i = 0; i < columns.size(); i++) {
+                context.addNode(new Node(columns.getIds()[i], columns.getXs()[i], columns.getYs()[i], columns.getPackets()[i]));
+            }
+            graph = new CSRGraph(context, transmissionRange);
+        }
+
+        File input = new File(textFile);
+        String name = input.getName();
+        if (name.lastIndexOf('.') > 0) {
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+        File directory = outputDirectory != null ? new File(outputDirectory) : input.getAbsoluteFile().getParentFile();
+        String output = new File(directory, name + EXTENSION).getPath();
+        write(output, columns, graph, transmissionRange == null ? -1 : transmissionRange);
+        return output;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !(args[0].equals("convert") || args[0].equals("info"))) {
+            System.out.println("Usage: java BinaryNetworkFile convert [--range R] [--out dir] <network.txt>...");
+            System.out.println("       java BinaryNetworkFile info <network" + EXTENSION + ">...");
+            return;
+        }
+
+        if (args[0].equals("info")) {
+            for (int i = 1; i < args.length; i++) {
+                BinaryNetworkFile file = open(args[i]);
+                System.out.println(args[i] + ": version " + file.version + ", " + file.getNumNodes() + " nodes, " +
+                    (file.hasAdjacency() ? "adjacency for range " + file.getTransmissionRange() + " (" + file.adjacencyEntries / 2 + " edges)" : "no adjacency"));
+            }
+            return;
+        }
+
+        Integer transmissionRange = null;
+        String outputDirectory = null;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--range")) {
+                transmissionRange = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--out")) {
+                outputDirectory = args[++i];
+            } else {
+                long startTime = System.nanoTime();
+                String output = convert(args[i], transmissionRange, outputDirectory);
+                System.out.println(String.format("%s -> %s (%.1f ms)", args[i], output, (System.nanoTime() - startTime) / 1_000_000.0));
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.List;
+
+/*
+ * This graph stores the same connections as ListGraph in compressed sparse 
+ * row form: the neighbors of the node with ID i are targets[offsets[i-1]] up to 
+ * targets[offsets[i]] (exclusive), with the matching distances at the same 
+ * positions. Three primitive arrays replace a list per node & an Edge object 
+ * per direction, so a neighbor scan is a walk over contiguous memory 
+ */
+public class CSRGraph implements NetworkGraph {
+    private int[] offsets;
+    private int[] targets;
+    private float[] distances;
+    private SimulationContext context;
+
+    // Connects every pair of the context's nodes within transmission range, found through the spatial grid 
+    public CSRGraph(SimulationContext context, int transmissionRange) {
+        this.context = context;
+        List<Node> nodeList = context.getNodeList();
+        int numVertices = nodeList.size();
+        SpatialGrid grid = new SpatialGrid(nodeList, transmissionRange);
+
+        // First pass counts each node's neighbors, second pass fills the rows. 
+        // Pairs arrive in the same order ListGraph.addEdge sees them, so every row 
+        // lists its neighbors in the same order as the adjacency list would 
+        offsets = new int[numVertices + 1];
+        grid.forEachPairInRange(transmissionRange, (i, j) -> {
+            offsets[nodeList.get(i).getId()]++;
+            offsets[nodeList.get(j).getId()]++;
+        });
+        for (int i = 0; i < numVertices; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        targets = new int[offsets[numVertices]];
+        distances = new float[offsets[numVertices]];
+        int[] fill = new int[numVertices];
+        grid.forEachPairInRange(transmissionRange, (i, j) -> {
+            Node source = nodeList.get(i);
+            Node connected = nodeList.get(j);
+            float distance = (float) source.getDistance(connected);
+            int s = source.getId() - 1;
+            int c = connected.getId() - 1;
+            targets[offsets[s] + fill[s]] = connected.getId();
+            distances[offsets[s] + fill[s]++] = distance;
+            targets[offsets[c] + fill[c]] = source.getId();
+            distances[offsets[c] + fill[c]++] = distance;
+        });
+    }
+
+    // Wraps rows that were already built elsewhere 
+    public CSRGraph(SimulationContext context, int[] offsets, int[] targets, float[] distances) {
+        this.context = context;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.distances = distances;
+    }
+
+    public int getNumVertices() {
+        return offsets.length - 1;
+    }
+
+    public int getNumEdges() {
+        return targets.length / 2;
+    }
+
+    public int getDegree(int nodeId) {
+        return offsets[nodeId] - offsets[nodeId - 1];
+    }
+
+    public int getNeighbor(int nodeId, int k) {
+        return targets[offsets[nodeId - 1] + k];
+    }
+
+    public double getNeighborDistance(int nodeId, int k) {
+        return distances[offsets[nodeId - 1] + k];
+    }
+
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int[] getTargets() {
+        return targets;
+    }
+
+    public float[] getDistances() {
+        return distances;
+    }
+
+    // Same as ListGraph.calculatePrize, walking the node's row instead of its edge list 
+    public int calculatePrize(int nodeId, boolean initial) {
+        Node sourceNode = context.getNode(nodeId);
+        int initialPrize = sourceNode.getPackets();
+        for (int k = offsets[nodeId - 1]; k < offsets[nodeId]; k++) {
+            Node connectedNode = context.getNode(targets[k]);
+            initialPrize += connectedNode.getPackets();
+            if (initial) {
+                sourceNode.addToNetwork(connectedNode);
+            }
+        }
+        return initialPrize;
+    }
+}
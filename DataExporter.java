@@ -1,11 +1,20 @@
+    import java.io.BufferedWriter;
     import java.io.FileWriter;
     import java.io.IOException;
+    import java.io.Writer;
     import java.util.ArrayList;
+    import java.util.HashMap;
     import java.util.List;
+    import java.util.Map;
 
     /**
      * This class handles exporting simulation results to CSV files
      * for later analysis in Excel.
+     *
+     * By default every result is kept until exportToCSV writes the whole file.
+     * After streamTo, results are written as they arrive by a StreamingResultWriter
+     * and the battery groups keep only running totals, so memory stays flat however
+     * long the sweep is; finishStreaming then appends the statistics of each group.
      */
     public class DataExporter {
         
@@ -16,6 +25,7 @@
             private double distanceTraveled;
             private long computationalTime;
             private double batteryLevel;
+            private SimulationMetrics metrics;
             
             public SimulationResult(String networkName, int dataPackets, double distanceTraveled, 
                                     long computationalTime, double batteryLevel) {
@@ -31,12 +41,22 @@
             public double getDistanceTraveled() { return distanceTraveled; }
             public long getComputationalTime() { return computationalTime; }
             public double getBatteryLevel() { return batteryLevel; }
+            // Per-phase timings & counters of the run, or null if none were recorded
+            public SimulationMetrics getMetrics() { return metrics; }
+            public SimulationResult setMetrics(SimulationMetrics metrics) { this.metrics = metrics; return this; }
         }
         
         // Groups simulation results by battery level
         public static class BatteryGroup {
             private double batteryLevel;
             private List<SimulationResult> results;
+            private boolean retainResults;
+            
+            // Updated with every result, so the statistics never need the results themselves
+            private RunningStatistics dataPackets = new RunningStatistics();
+            private RunningStatistics distance = new RunningStatistics();
+            private RunningStatistics compTime = new RunningStatistics();
+            
             private double avgDataPackets;
             private double avgDistance;
             private double avgCompTime;
@@ -49,40 +69,35 @@
             private double percentChangeCompTime;
             
             public BatteryGroup(double batteryLevel) {
+                this(batteryLevel, true);
+            }
+            
+            // Without retainResults only the running statistics are kept, not the results
+            public BatteryGroup(double batteryLevel, boolean retainResults) {
                 this.batteryLevel = batteryLevel;
                 this.results = new ArrayList<>();
+                this.retainResults = retainResults;
             }
             
             public void addResult(SimulationResult result) {
-                results.add(result);
+                if (retainResults) {
+                    results.add(result);
+                }
+                dataPackets.add(result.getDataPackets());
+                distance.add(result.getDistanceTraveled());
+                compTime.add(result.getComputationalTime());
             }
             
             public void calculateStatistics() {
-                // Calculate averages
-                avgDataPackets = results.stream().mapToInt(SimulationResult::getDataPackets).average().orElse(0);
-                avgDistance = results.stream().mapToDouble(SimulationResult::getDistanceTraveled).average().orElse(0);
-                avgCompTime = results.stream().mapToLong(SimulationResult::getComputationalTime).average().orElse(0);
-                
-                // Calculate standard deviations
-                stdDevDataPackets = calculateStdDev(results.stream().mapToDouble(r -> r.getDataPackets()).toArray(), avgDataPackets);
-                stdDevDistance = calculateStdDev(results.stream().mapToDouble(SimulationResult::getDistanceTraveled).toArray(), avgDistance);
+                avgDataPackets = dataPackets.getMean();
+                avgDistance = distance.getMean();
+                avgCompTime = compTime.getMean();
+                stdDevDataPackets = dataPackets.getStdDev();
+                stdDevDistance = distance.getStdDev();
                 
-                // Calculate 95% confidence interval (using t-distribution with n-1 degrees of freedom)
-                // For simplicity, using 1.96 for large sample, adjust for small samples
-                double tValue = 1.96; // For large samples
-                int n = results.size();
-                if (n > 1) {
-                    confidenceDataPackets = tValue * (stdDevDataPackets / Math.sqrt(n));
-                    confidenceDistance = tValue * (stdDevDistance / Math.sqrt(n));
-                }
-            }
-            
-            private double calculateStdDev(double[] values, double mean) {
-                double sum = 0;
-                for (double value : values) {
-                    sum += Math.pow(value - mean, 2);
-                }
-                return Math.sqrt(sum / Math.max(1, values.length - 1));
+                // 95% confidence interval using the t-distribution with n-1 degrees of freedom
+                confidenceDataPackets = dataPackets.getConfidence95();
+                confidenceDistance = distance.getConfidence95();
             }
             
             public void setPercentChanges(double prevDataPackets, double prevDistance, double prevCompTime) {
@@ -99,6 +114,10 @@
             
             public double getBatteryLevel() { return batteryLevel; }
             public List<SimulationResult> getResults() { return results; }
+            public int getCount() { return (int) dataPackets.getCount(); }
+            public RunningStatistics getDataPacketStatistics() { return dataPackets; }
+            public RunningStatistics getDistanceStatistics() { return distance; }
+            public RunningStatistics getCompTimeStatistics() { return compTime; }
             public double getAvgDataPackets() { return avgDataPackets; }
             public double getAvgDistance() { return avgDistance; }
             public double getAvgCompTime() { return avgCompTime; }
@@ -112,24 +131,53 @@
         }
         
         private List<BatteryGroup> batteryGroups;
+        // The same groups keyed by the bits of their battery level
+        private Map<Long, BatteryGroup> groupsByBattery;
+        private StreamingResultWriter streamingWriter;
+        private BatteryGroup lastStreamedGroup;
         
         public DataExporter() {
             batteryGroups = new ArrayList<>();
+            groupsByBattery = new HashMap<>();
+        }
+        
+        // True when the sweep was started with -Dexport.stream=true
+        public static boolean streamingRequested() {
+            return Boolean.getBoolean("export.stream");
+        }
+        
+        /*
+         * Switches to streaming mode: from now on each result is written to the file
+         * as soon as it is added, and finishStreaming completes the file
+         */
+        public void streamTo(String filename) throws IOException {
+            if (!batteryGroups.isEmpty()) {
+                throw new IllegalStateException("Streaming has to start before the first result is added");
+            }
+            streamingWriter = new StreamingResultWriter(filename);
+        }
+        
+        public boolean isStreaming() {
+            return streamingWriter != null;
         }
         
         public void addResult(SimulationResult result) {
-            // Find or create the appropriate battery group
-            BatteryGroup group = batteryGroups.stream()
-                    .filter(g -> g.getBatteryLevel() == result.getBatteryLevel())
-                    .findFirst()
-                    .orElse(null);
+            // Find or create the appropriate battery group (adding 0.0 folds -0.0 into 0.0)
+            long key = Double.doubleToLongBits(result.getBatteryLevel() + 0.0);
+            BatteryGroup group = groupsByBattery.get(key);
             
             if (group == null) {
-                group = new BatteryGroup(result.getBatteryLevel());
+                group = new BatteryGroup(result.getBatteryLevel(), !isStreaming());
                 batteryGroups.add(group);
+                groupsByBattery.put(key, group);
             }
             
             group.addResult(result);
+            if (isStreaming()) {
+                // A battery header goes in whenever the battery level changes from the previous row
+                streamingWriter.write(result, group.getCount(), group != lastStreamedGroup);
+                lastStreamedGroup = group;
+            }
         }
         
         public void calculateAllStatistics() {
@@ -154,49 +202,124 @@
         }
         
         public void exportToCSV(String filename) throws IOException {
-            try (FileWriter writer = new FileWriter(filename)) {
+            if (isStreaming()) {
+                throw new IllegalStateException("Results are being streamed; call finishStreaming instead");
+            }
+            try (Writer writer = new BufferedWriter(new FileWriter(filename))) {
                 // Write headers
-                writer.write("PCA Algorithm,Data Packets,Distance Traveled,Computational Time\n");
+                writer.write("PCA Algorithm,Data Packets,Distance Traveled,Computational Time," + SimulationMetrics.CSV_HEADER + "\n");
                 
                 // Process each battery group
                 for (BatteryGroup group : batteryGroups) {
                     // Write battery level header
                     writer.write(String.format("%.0fWh\n", group.getBatteryLevel()));
                     
-                    // Write individual network results
+                    // Write individual network results, followed by their metrics (empty cells if there are none)
+                    StringBuilder metricCells = new StringBuilder();
                     for (int i = 0; i < group.getResults().size(); i++) {
                         SimulationResult result = group.getResults().get(i);
-                        writer.write(String.format("Network %d,%d,%.2f,%d\n", 
+                        metricCells.setLength(0);
+                        if (result.getMetrics() != null) {
+                            result.getMetrics().appendCsv(metricCells);
+                        } else {
+                            SimulationMetrics.appendEmptyCsv(metricCells);
+                        }
+                        writer.write(String.format("Network %d,%d,%.2f,%d,%s\n", 
                             i + 1, 
                             result.getDataPackets(),
                             result.getDistanceTraveled(),
-                            result.getComputationalTime()
+                            result.getComputationalTime(),
+                            metricCells
                         ));
                     }
                     
-                    // Write statistics
-                    writer.write(String.format("Stan Dev,%.8f,%.8f\n", 
-                        group.getStdDevDataPackets(), 
-                        group.getStdDevDistance()
-                    ));
-                    
-                    writer.write(String.format("Confidence,%.8f,%.8f\n", 
-                        group.getConfidenceDataPackets(), 
-                        group.getConfidenceDistance()
-                    ));
-                    
-                    writer.write(String.format("Average,%.2f,%.2f,%d\n", 
-                        group.getAvgDataPackets(),
-                        group.getAvgDistance(),
-                        (long)group.getAvgCompTime()
-                    ));
-                    
-                    writer.write(String.format("Pecent Change,%.8f,%.8f,%.8f\n\n", 
-                        group.getPercentChangeDataPackets(),
-                        group.getPercentChangeDistance(),
-                        group.getPercentChangeCompTime()
+                    writeStatistics(writer, group);
+                }
+            }
+        }
+        
+        /*
+         * Waits for the streamed rows to reach the file, then calculates the statistics
+         * and appends them for each battery group
+         */
+        public void finishStreaming() throws IOException {
+            if (!isStreaming()) {
+                throw new IllegalStateException("streamTo was never called");
+            }
+            BufferedWriter writer = streamingWriter.finish();
+            streamingWriter = null;
+            try {
+                calculateAllStatistics();
+                writer.write("\n");
+                for (BatteryGroup group : batteryGroups) {
+                    writer.write(String.format("%.0fWh\n", group.getBatteryLevel()));
+                    writeStatistics(writer, group);
+                }
+            } finally {
+                writer.close();
+            }
+        }
+        
+        /*
+         * Writes fleet plans: for each network, one row per robot (with the packets
+         * credited to it) followed by the fleet-wide totals
+         */
+        public void exportFleetToCSV(String filename, List<FleetPlanner.FleetPlan> plans) throws IOException {
+            try (Writer writer = new BufferedWriter(new FileWriter(filename))) {
+                writer.write("PCA Algorithm,Data Packets,Distance Traveled,Computational Time\n");
+                for (FleetPlanner.FleetPlan plan : plans) {
+                    writer.write(String.format("%s %.0fWh\n", plan.getNetworkName(), plan.getBattery()));
+                    for (SimulationResult result : plan.getRobotResults()) {
+                        writer.write(String.format("%s,%d,%.2f,%d\n",
+                            result.getNetworkName(),
+                            result.getDataPackets(),
+                            result.getDistanceTraveled(),
+                            result.getComputationalTime()
+                        ));
+                    }
+                    SimulationResult fleet = plan.getFleetResult();
+                    writer.write(String.format("Fleet,%d,%.2f,%d\n\n",
+                        fleet.getDataPackets(),
+                        fleet.getDistanceTraveled(),
+                        fleet.getComputationalTime()
                     ));
                 }
             }
         }
+        
+        private void writeStatistics(Writer writer, BatteryGroup group) throws IOException {
+            // Write statistics
+            writer.write(String.format("Stan Dev,%.8f,%.8f\n", 
+                group.getStdDevDataPackets(), 
+                group.getStdDevDistance()
+            ));
+            
+            writer.write(String.format("Confidence,%.8f,%.8f\n", 
+                group.getConfidenceDataPackets(), 
+                group.getConfidenceDistance()
+            ));
+            
+            writer.write(String.format("Average,%.2f,%.2f,%d\n", 
+                group.getAvgDataPackets(),
+                group.getAvgDistance(),
+                (long)group.getAvgCompTime()
+            ));
+            
+            writePercentile(writer, "P50", group.getDataPacketStatistics().getP50(),
+                group.getDistanceStatistics().getP50(), group.getCompTimeStatistics().getP50());
+            writePercentile(writer, "P95", group.getDataPacketStatistics().getP95(),
+                group.getDistanceStatistics().getP95(), group.getCompTimeStatistics().getP95());
+            writePercentile(writer, "P99", group.getDataPacketStatistics().getP99(),
+                group.getDistanceStatistics().getP99(), group.getCompTimeStatistics().getP99());
+            
+            writer.write(String.format("Pecent Change,%.8f,%.8f,%.8f\n\n", 
+                group.getPercentChangeDataPackets(),
+                group.getPercentChangeDistance(),
+                group.getPercentChangeCompTime()
+            ));
+        }
+        
+        private void writePercentile(Writer writer, String label, double dataPackets, double distance, double compTime) throws IOException {
+            writer.write(String.format("%s,%.2f,%.2f,%d\n", label, dataPackets, distance, Math.round(compTime)));
+        }
     }
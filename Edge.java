@@ -3,7 +3,7 @@ public class Edge {
     private int destination; 
     public double distance ;
 
-    Edge(int source, int destination, int numPackets, double distance){ 
+    Edge(int source, int destination, double distance){ 
         this.source = source; 
         this.destination = destination; 
         this.distance = distance;
@@ -0,0 +1,370 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exact branch-and-bound solver for small networks (up to 63 nodes), using
+ * the same model as Robot: the robot leaves the depot, may move to a node only
+ * while battery > (distance to the node + the node's distance home) / 36, and
+ * collects the packets of every node in the closed neighborhood of the nodes
+ * it visits. The best route has the most packets, then the shortest distance.
+ *
+ * Sets of nodes are long bitmasks. Each search state is a partial route:
+ * where the robot is, what it has visited & covered, and the battery left.
+ *   - Only nodes that are reachable and would cover new packets are branched on;
+ *     visiting anything else only makes the route longer.
+ *   - The upper bound is the covered packets plus every uncovered packet that
+ *     some reachable node's neighborhood contains. A subtree is cut off when the
+ *     bound can't beat the best route found, or can only tie it while the route
+ *     is already too long to be shorter.
+ *   - The covered packets depend only on the visited set, so a state reached
+ *     at (position, visited set) with no less distance than an earlier one is
+ *     dominated. The best distance per state is remembered, up to a size limit.
+ *   - The greedy route is the first incumbent, and children are tried in order
+ *     of new packets per distance so good routes are found early.
+ * The top levels of the tree are split into ForkJoin tasks that share the
+ * incumbent & the memo.
+ *
+ * Usage: java ExactSolver [--range 100] [--threads N] [--time-limit ms] <battery> <network file>...
+ */
+public class ExactSolver {
+    public static final int MAX_NODES = 63;
+    private static final int SPLIT_DEPTH = 2;
+    private static final int DEFAULT_MEMO_LIMIT = 4_000_000;
+
+    private int n;
+    private int[] ids;
+    private int[] packets;
+    private long[] coverage;
+    private double[][] distance;
+    private double[] depotDistance;
+    private double battery;
+    private NetworkSnapshot snapshot;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long timeLimitMillis = 0;
+    private int memoLimit = DEFAULT_MEMO_LIMIT;
+
+    private AtomicReference<Result> best = new AtomicReference<>();
+    private ConcurrentHashMap<StateKey, Double> memo;
+    private LongAdder explored = new LongAdder();
+    private long deadline;
+    private volatile boolean timedOut;
+
+    // The best route found & whether the search finished, which makes it optimal
+    public static class Result {
+        private int totalPackets;
+        private double totalDistance;
+        private List<Integer> route;
+        private boolean optimal;
+        private long statesExplored;
+
+        Result(int totalPackets, double totalDistance, List<Integer> route) {
+            this.totalPackets = totalPackets;
+            this.totalDistance = totalDistance;
+            this.route = route;
+        }
+
+        boolean isBetterThan(Result other) {
+            return other == null || totalPackets > other.totalPackets ||
+                (totalPackets == other.totalPackets && totalDistance < other.totalDistance);
+        }
+
+        public int getTotalPackets() { return totalPackets; }
+        public double getTotalDistance() { return totalDistance; }
+        // Node IDs in visiting order, starting & ending with the depot (ID 0)
+        public List<Integer> getRoute() { return route; }
+        public boolean isOptimal() { return optimal; }
+        public long getStatesExplored() { return statesExplored; }
+    }
+
+    // Position (-1 for the depot) & visited set of a partial route
+    private static class StateKey {
+        private long visited;
+        private int position;
+
+        StateKey(long visited, int position) {
+            this.visited = visited;
+            this.position = position;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof StateKey)) {
+                return false;
+            }
+            StateKey key = (StateKey) other;
+            return visited == key.visited && position == key.position;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(visited * 0x9E3779B97F4A7C15L) * 31 + position;
+        }
+    }
+
+    public ExactSolver(NetworkSnapshot snapshot, double battery) {
+        if (snapshot.getNumNodes() > MAX_NODES) {
+            throw new IllegalArgumentException("The exact solver handles up to " + MAX_NODES + " nodes, this network has " + snapshot.getNumNodes());
+        }
+        this.snapshot = snapshot;
+        this.battery = battery;
+
+        SimulationContext context = snapshot.acquire();
+        try {
+            List<Node> nodeList = context.getNodeList();
+            n = nodeList.size();
+            ids = new int[n];
+            packets = new int[n];
+            coverage = new long[n];
+            distance = new double[n][n];
+            depotDistance = new double[n];
+            Node depot = new Node();
+            int[] indexOfId = new int[n == 0 ? 1 : nodeList.stream().mapToInt(Node::getId).max().getAsInt() + 1];
+            for (int i = 0; i < n; i++) {
+                Node node = nodeList.get(i);
+                ids[i] = node.getId();
+                packets[i] = node.getPackets();
+                indexOfId[node.getId()] = i;
+                depotDistance[i] = depot.getDistance(node);
+                for (int j = 0; j < n; j++) {
+                    distance[i][j] = node.getDistance(nodeList.get(j));
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                coverage[i] = 1L << i;
+                for (Node neighbor : nodeList.get(i).getNetwork()) {
+                    coverage[i] |= 1L << indexOfId[neighbor.getId()];
+                }
+            }
+        } finally {
+            snapshot.release(context);
+        }
+    }
+
+    public ExactSolver setParallelism(int parallelism) { this.parallelism = Math.max(1, parallelism); return this; }
+    // Stops after this many milliseconds with the best route so far (not proven optimal); 0 for no limit
+    public ExactSolver setTimeLimit(long timeLimitMillis) { this.timeLimitMillis = timeLimitMillis; return this; }
+    public ExactSolver setMemoLimit(int memoLimit) { this.memoLimit = memoLimit; return this; }
+
+    public Result solve() {
+        best.set(greedyRoute());
+        memo = new ConcurrentHashMap<>();
+        explored.reset();
+        timedOut = false;
+        deadline = timeLimitMillis > 0 ? System.nanoTime() + timeLimitMillis * 1_000_000 : Long.MAX_VALUE;
+
+        int[] route = new int[n];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new Subtree(-1, 0L, 0L, 0, battery, 0, route, 0));
+        } finally {
+            pool.shutdown();
+        }
+
+        Result result = best.get();
+        result.optimal = !timedOut;
+        result.statesExplored = explored.sum();
+        return result;
+    }
+
+    // The PCR greedy's route, as the starting incumbent
+    private Result greedyRoute() {
+        SimulationContext context = snapshot.acquire();
+        try {
+            Robot robot = new Robot(context, battery);
+            Node next = robot.selectNextNode();
+            while (next != null) {
+                robot.moveRobotToNode(next);
+                next = robot.selectNextNode();
+            }
+            robot.returnHome();
+            List<Integer> route = new ArrayList<>();
+            for (Node node : robot.getRoute()) {
+                route.add(node.getId());
+            }
+            return new Result(robot.getTotalPackets(), robot.getTotalDistance(), route);
+        } finally {
+            snapshot.release(context);
+        }
+    }
+
+    private double leg(int from, int to) {
+        return from < 0 ? depotDistance[to] : distance[from][to];
+    }
+
+    private int packetsIn(long set) {
+        int sum = 0;
+        while (set != 0) {
+            sum += packets[Long.numberOfTrailingZeros(set)];
+            set &= set - 1;
+        }
+        return sum;
+    }
+
+    private void offer(Result candidate) {
+        Result current;
+        do {
+            current = best.get();
+            if (!candidate.isBetterThan(current)) {
+                return;
+            }
+        } while (!best.compareAndSet(current, candidate));
+    }
+
+    // One partial route; the first SPLIT_DEPTH levels fork their children as tasks
+    private class Subtree extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private int position;
+        private long visited;
+        private long covered;
+        private int coveredPackets;
+        private double batteryLeft;
+        private double distanceSoFar;
+        private int[] route;
+        private int depth;
+
+        Subtree(int position, long visited, long covered, int coveredPackets, double batteryLeft, double distanceSoFar, int[] route, int depth) {
+            this.position = position;
+            this.visited = visited;
+            this.covered = covered;
+            this.coveredPackets = coveredPackets;
+            this.batteryLeft = batteryLeft;
+            this.distanceSoFar = distanceSoFar;
+            this.route = route;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            search(position, visited, covered, coveredPackets, batteryLeft, distanceSoFar, route, depth);
+        }
+    }
+
+    private void search(int position, long visited, long covered, int coveredPackets, double batteryLeft, double distanceSoFar, int[] route, int depth) {
+        explored.increment();
+        if (timedOut || System.nanoTime() >= deadline) {
+            timedOut = true;
+            return;
+        }
+
+        // Dominated if this position & visited set were already reached with no more distance
+        if (position >= 0) {
+            StateKey key = new StateKey(visited, position);
+            Double seen = memo.get(key);
+            if (seen != null && seen <= distanceSoFar) {
+                return;
+            }
+            if (seen != null || memo.size() < memoLimit) {
+                memo.merge(key, distanceSoFar, Math::min);
+            }
+        }
+
+        double homeDistance = position < 0 ? 0 : depotDistance[position];
+        if (position >= 0) {
+            List<Integer> finished = new ArrayList<>(depth + 2);
+            finished.add(0);
+            for (int k = 0; k < depth; k++) {
+                finished.add(ids[route[k]]);
+            }
+            finished.add(0);
+            offer(new Result(coveredPackets, distanceSoFar + homeDistance, finished));
+        }
+
+        // Children: reachable nodes that still cover something new, and the bound they give
+        int[] children = new int[n];
+        double[] score = new double[n];
+        int count = 0;
+        long reachableCoverage = 0;
+        for (int v = 0; v < n; v++) {
+            if ((visited >>> v & 1) != 0) {
+                continue;
+            }
+            double step = leg(position, v);
+            if (!(batteryLeft > depotDistance[v] / 36 + step / 36)) {
+                continue;
+            }
+            long gain = coverage[v] & ~covered;
+            if (gain == 0) {
+                continue;
+            }
+            reachableCoverage |= gain;
+            children[count] = v;
+            score[count++] = packetsIn(gain) / Math.max(step, 1e-9);
+        }
+        if (count == 0) {
+            return;
+        }
+        int bound = coveredPackets + packetsIn(reachableCoverage);
+        Result incumbent = best.get();
+        if (bound < incumbent.totalPackets ||
+            (bound == incumbent.totalPackets && distanceSoFar + homeDistance >= incumbent.totalDistance)) {
+            return;
+        }
+
+        // Most new packets per distance first
+        Integer[] order = new Integer[count];
+        for (int k = 0; k < count; k++) {
+            order[k] = k;
+        }
+        double[] scores = score;
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+
+        List<Subtree> tasks = depth < SPLIT_DEPTH && parallelism > 1 ? new ArrayList<>(count) : null;
+        for (int k = 0; k < count; k++) {
+            int v = children[order[k]];
+            double step = leg(position, v);
+            long newCovered = covered | coverage[v];
+            int newPackets = coveredPackets + packetsIn(coverage[v] & ~covered);
+            int[] childRoute = tasks != null ? Arrays.copyOf(route, n) : route;
+            childRoute[depth] = v;
+            if (tasks != null) {
+                tasks.add(new Subtree(v, visited | 1L << v, newCovered, newPackets, batteryLeft - step / 36, distanceSoFar + step, childRoute, depth + 1));
+            } else {
+                search(v, visited | 1L << v, newCovered, newPackets, batteryLeft - step / 36, distanceSoFar + step, childRoute, depth + 1);
+            }
+        }
+        if (tasks != null) {
+            RecursiveAction.invokeAll(tasks);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int range = 100;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long timeLimit = 0;
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--range": range = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--time-limit": timeLimit = Long.parseLong(args[++i]); break;
+                default: positional.add(args[i]);
+            }
+        }
+        if (positional.size() < 2) {
+            System.out.println("Usage: java ExactSolver [--range 100] [--threads N] [--time-limit ms] <battery> <network file>...");
+            return;
+        }
+
+        double battery = Double.parseDouble(positional.get(0));
+        for (String file : positional.subList(1, positional.size())) {
+            NetworkSnapshot snapshot = NetworkSnapshot.load(file, range);
+            ExactSolver solver = new ExactSolver(snapshot, battery).setParallelism(threads).setTimeLimit(timeLimit);
+            int greedyPackets = solver.greedyRoute().getTotalPackets();
+            long startTime = System.nanoTime();
+            Result result = solver.solve();
+            System.out.println(String.format("%s: %d packets, %.2f distance, %s (greedy %d packets, %d states, %.1f ms)",
+                file, result.getTotalPackets(), result.getTotalDistance(), result.isOptimal() ? "optimal" : "time limit reached",
+                greedyPackets, result.getStatesExplored(), (System.nanoTime() - startTime) / 1_000_000.0));
+            System.out.println("  route: " + result.getRoute());
+        }
+    }
+}
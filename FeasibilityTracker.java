@@ -0,0 +1,157 @@
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * This class keeps track of which nodes could still be feasible for the robot,
+ * so setFeasibleNodes doesn't have to look at every node on every step.
+ *
+ * The energy needed to get from each node back to the depot is computed once.
+ * Battery only goes down, so once the battery is no larger than a node's depot
+ * energy the node can never be feasible again, whatever the robot's position.
+ * Nodes are kept in a max-heap by depot energy and popped off for good as the
+ * battery drops past them. Nodes whose prize has been drained to 0 (which
+ * includes every visited node) are dropped the first time a scan sees them,
+ * since prizes never go back up.
+ *
+ * The nodes still in play sit in a NodeArrays store in their original order, so
+ * the feasible list comes out in the same order as a scan of the unvisited
+ * nodes, and the distances for a whole scan are worked out in one vectorizable
+ * loop. Dropped nodes are packed out once they take up an eighth of the store.
+ */
+public class FeasibilityTracker {
+    private List<Node> nodes;
+    private double[] depotEnergy;
+    private boolean[] evicted;
+
+    // live[k] is the candidate index of the node in slot k of arrays, for k < liveCount
+    private NodeArrays arrays;
+    private int[] live;
+    private int liveCount;
+    private double[] distance;
+
+    // Distances from the robot to the nodes of the last feasible list, in the same order
+    private double[] feasibleDistance;
+
+    // Max-heap of node indices ordered by depotEnergy[]
+    private int[] heap;
+    private int heapSize;
+
+    // Number of nodes given the full feasibility test so far
+    private long checks;
+
+    public FeasibilityTracker(List<Node> candidates) {
+        this.nodes = candidates;
+        int n = candidates.size();
+        depotEnergy = new double[n];
+        evicted = new boolean[n];
+        live = new int[n];
+        distance = new double[n];
+        feasibleDistance = new double[16];
+        heap = new int[n];
+
+        arrays = new NodeArrays(candidates);
+        for (int i = 0; i < n; i++) {
+            depotEnergy[i] = arrays.getDepotEnergy(i);
+            live[i] = i;
+            heap[heapSize++] = i;
+        }
+        liveCount = n;
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /*
+     * Adds every feasible node to the given list, in original order. The test is
+     * the same one as Robot.canReach, with the depot energy looked up instead of
+     * recomputed
+     */
+    public void collectFeasible(Robot robot, List<Node> feasibleNodes) {
+        double battery = robot.getBattery();
+
+        // Anything the battery can no longer bring back from the depot is gone for good
+        while (heapSize > 0 && depotEnergy[heap[0]] >= battery) {
+            evicted[heap[0]] = true;
+            heap[0] = heap[--heapSize];
+            siftDown(0);
+        }
+
+        arrays.distances(robot.getX(), robot.getY(), 0, liveCount, distance);
+
+        int found = 0;
+        int dropped = 0;
+        for (int k = 0; k < liveCount; k++) {
+            int i = live[k];
+            if (evicted[i]) {
+                dropped++;
+                continue;
+            }
+            Node node = nodes.get(i);
+            if (node.getPrize() == 0) {
+                evicted[i] = true;
+                dropped++;
+                continue;
+            }
+            checks++;
+            if (battery > arrays.getDepotEnergy(k) + distance[k]/36) {
+                feasibleNodes.add(node);
+                if (found == feasibleDistance.length) {
+                    feasibleDistance = Arrays.copyOf(feasibleDistance, found * 2);
+                }
+                feasibleDistance[found++] = distance[k];
+            }
+        }
+        if (dropped > liveCount / 8) {
+            compact();
+        }
+    }
+
+    // Packs the nodes still in play to the front again, once enough of the slots hold dropped ones
+    private void compact() {
+        int kept = 0;
+        for (int k = 0; k < liveCount; k++) {
+            if (!evicted[live[k]]) {
+                live[kept] = live[k];
+                arrays.move(k, kept);
+                kept++;
+            }
+        }
+        liveCount = kept;
+    }
+
+    // distances()[j] is the distance from the robot to the j-th node of the last feasible list
+    public double[] distances() {
+        return feasibleDistance;
+    }
+
+    // Number of nodes that could still become feasible later on
+    public int getRemaining() {
+        int remaining = 0;
+        for (int k = 0; k < liveCount; k++) {
+            if (!evicted[live[k]]) {
+                remaining++;
+            }
+        }
+        return remaining;
+    }
+
+    public long getChecks() {
+        return checks;
+    }
+
+    private void siftDown(int i) {
+        int node = heap[i];
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && depotEnergy[heap[child + 1]] > depotEnergy[heap[child]]) {
+                child++;
+            }
+            if (depotEnergy[heap[child]] <= depotEnergy[node]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = node;
+    }
+}
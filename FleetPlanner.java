@@ -0,0 +1,304 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plans routes for a fleet of robots that share the depot at (0,0), each with
+ * its own battery.
+ *
+ * The field is split into one angular sector per robot around the depot,
+ * either of equal angle or holding an equal share of the packets (so a dense
+ * part of the field is split between more robots). Each robot runs the PCR
+ * greedy on its own copy of the network, checked out of a NetworkSnapshot,
+ * and may only visit nodes in its sector; it still covers neighbors across
+ * the border. The robots are planned concurrently.
+ *
+ * Robots near a border can cover the same nodes. Conflicts are resolved in one
+ * pass in robot order: each robot is planned again with everything the other
+ * robots cover already drained, and the new route is kept if it adds more
+ * packets of its own. Finally every covered node is credited once, to the
+ * first robot that covers it, so the per-robot packets add up to the fleet total.
+ *
+ * Usage: java FleetPlanner [--robots 3] [--partition angle|packets] [--range 100]
+ *        [--csv fleet_results.csv] <battery> <network file>...
+ */
+public class FleetPlanner {
+    public enum Partition { ANGLE, PACKETS }
+
+    private NetworkSnapshot snapshot;
+    private double battery;
+    private int numRobots;
+    private Partition partition = Partition.PACKETS;
+    private int[] packetsById;
+
+    // The route of one robot & the nodes it covers
+    private static class RoutePlan {
+        List<Integer> route = new ArrayList<>();
+        double distance;
+        BitSet covered = new BitSet();
+        long planningTime;
+    }
+
+    // The planned fleet: one result per robot plus the fleet-wide totals
+    public static class FleetPlan {
+        private String networkName;
+        private double battery;
+        private List<List<Integer>> routes = new ArrayList<>();
+        private List<DataExporter.SimulationResult> robotResults = new ArrayList<>();
+        private DataExporter.SimulationResult fleetResult;
+
+        public String getNetworkName() { return networkName; }
+        public double getBattery() { return battery; }
+        // Node IDs in visiting order for each robot, starting & ending with the depot (ID 0)
+        public List<List<Integer>> getRoutes() { return routes; }
+        public List<DataExporter.SimulationResult> getRobotResults() { return robotResults; }
+        public DataExporter.SimulationResult getFleetResult() { return fleetResult; }
+    }
+
+    public FleetPlanner(NetworkSnapshot snapshot, double battery, int numRobots) {
+        this.snapshot = snapshot;
+        this.battery = battery;
+        this.numRobots = Math.max(1, numRobots);
+        SimulationContext context = snapshot.acquire();
+        try {
+            int maxId = 0;
+            for (Node node : context.getNodeList()) {
+                maxId = Math.max(maxId, node.getId());
+            }
+            packetsById = new int[maxId + 1];
+            for (Node node : context.getNodeList()) {
+                packetsById[node.getId()] = node.getPackets();
+            }
+        } finally {
+            snapshot.release(context);
+        }
+    }
+
+    public FleetPlanner setPartition(Partition partition) {
+        this.partition = partition;
+        return this;
+    }
+
+    public FleetPlan plan(String networkName) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        List<List<Node>> sectors;
+        SimulationContext layout = snapshot.acquire();
+        try {
+            sectors = partition(layout.getNodeList());
+        } finally {
+            snapshot.release(layout);
+        }
+
+        // Every robot plans on its own copy of the network at the same time
+        RoutePlan[] plans = new RoutePlan[numRobots];
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(numRobots, Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<RoutePlan>> futures = new ArrayList<>();
+            for (int r = 0; r < numRobots; r++) {
+                int robot = r;
+                futures.add(pool.submit(() -> planRobot(sectors.get(robot), new BitSet())));
+            }
+            for (int r = 0; r < numRobots; r++) {
+                plans[r] = futures.get(r).get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Planning a robot failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        // Plan each robot again around what the others cover, keeping the better route
+        for (int r = 0; r < numRobots; r++) {
+            BitSet others = new BitSet();
+            for (int o = 0; o < numRobots; o++) {
+                if (o != r) {
+                    others.or(plans[o].covered);
+                }
+            }
+            RoutePlan replanned = planRobot(sectors.get(r), others);
+            if (uniquePackets(replanned.covered, others) > uniquePackets(plans[r].covered, others)) {
+                replanned.planningTime += plans[r].planningTime;
+                plans[r] = replanned;
+            }
+        }
+
+        // Credit each covered node to the first robot that covers it
+        FleetPlan fleet = new FleetPlan();
+        fleet.networkName = networkName;
+        fleet.battery = battery;
+        BitSet credited = new BitSet();
+        int fleetPackets = 0;
+        double fleetDistance = 0;
+        for (int r = 0; r < numRobots; r++) {
+            BitSet own = (BitSet) plans[r].covered.clone();
+            own.andNot(credited);
+            credited.or(own);
+            int robotPackets = packetsOf(own);
+            fleetPackets += robotPackets;
+            fleetDistance += plans[r].distance;
+            fleet.routes.add(plans[r].route);
+            fleet.robotResults.add(new DataExporter.SimulationResult(
+                "Robot " + (r + 1), robotPackets, plans[r].distance, plans[r].planningTime, battery));
+        }
+        fleet.fleetResult = new DataExporter.SimulationResult(
+            networkName, fleetPackets, fleetDistance, System.currentTimeMillis() - startTime, battery);
+        return fleet;
+    }
+
+    /*
+     * Splits the nodes into numRobots sectors by their angle around the depot.
+     * Nodes keep their original order inside a sector, so ties in the greedy
+     * are broken the same way as for a single robot
+     */
+    private List<List<Node>> partition(List<Node> nodeList) {
+        int n = nodeList.size();
+        double[] angles = new double[n];
+        double minAngle = Double.POSITIVE_INFINITY;
+        double maxAngle = Double.NEGATIVE_INFINITY;
+        long totalPackets = 0;
+        for (int i = 0; i < n; i++) {
+            Node node = nodeList.get(i);
+            angles[i] = Math.atan2(node.getY(), node.getX());
+            minAngle = Math.min(minAngle, angles[i]);
+            maxAngle = Math.max(maxAngle, angles[i]);
+            totalPackets += node.getPackets();
+        }
+
+        // Upper angle of each sector but the last
+        double[] borders = new double[numRobots - 1];
+        if (partition == Partition.ANGLE) {
+            for (int s = 0; s < borders.length; s++) {
+                borders[s] = minAngle + (maxAngle - minAngle) * (s + 1) / numRobots;
+            }
+        } else {
+            Integer[] byAngle = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                byAngle[i] = i;
+            }
+            Arrays.sort(byAngle, (a, b) -> Double.compare(angles[a], angles[b]));
+            long running = 0;
+            int s = 0;
+            for (int k = 0; k < n && s < borders.length; k++) {
+                running += nodeList.get(byAngle[k]).getPackets();
+                while (s < borders.length && running * numRobots >= totalPackets * (s + 1)) {
+                    borders[s++] = angles[byAngle[k]];
+                }
+            }
+            while (s < borders.length) {
+                borders[s++] = maxAngle;
+            }
+        }
+
+        List<List<Node>> sectors = new ArrayList<>();
+        for (int s = 0; s < numRobots; s++) {
+            sectors.add(new ArrayList<>());
+        }
+        for (int i = 0; i < n; i++) {
+            int s = 0;
+            while (s < borders.length && angles[i] > borders[s]) {
+                s++;
+            }
+            sectors.get(s).add(nodeList.get(i));
+        }
+        return sectors;
+    }
+
+    // Runs the greedy for one robot on a fresh copy of the network with the given nodes already drained
+    private RoutePlan planRobot(List<Node> sector, BitSet alreadyCovered) {
+        long startTime = System.currentTimeMillis();
+        SimulationContext context = snapshot.acquire();
+        try {
+            // The sector holds nodes of another context, so look up this context's copies
+            List<Node> candidates = new ArrayList<>(sector.size());
+            for (Node node : sector) {
+                candidates.add(context.getNode(node.getId()));
+            }
+            for (int id = alreadyCovered.nextSetBit(0); id >= 0; id = alreadyCovered.nextSetBit(id + 1)) {
+                context.getNode(id).drainPackets();
+            }
+
+            Robot robot = new Robot(context, battery, candidates);
+            Node next = robot.selectNextNode();
+            while (next != null) {
+                robot.moveRobotToNode(next);
+                next = robot.selectNextNode();
+            }
+            robot.returnHome();
+
+            RoutePlan plan = new RoutePlan();
+            plan.distance = robot.getTotalDistance();
+            for (Node node : robot.getRoute()) {
+                plan.route.add(node.getId());
+                if (node.getId() != 0) {
+                    plan.covered.set(node.getId());
+                    for (Node neighbor : node.getNetwork()) {
+                        plan.covered.set(neighbor.getId());
+                    }
+                }
+            }
+            plan.planningTime = System.currentTimeMillis() - startTime;
+            return plan;
+        } finally {
+            snapshot.release(context);
+        }
+    }
+
+    private int uniquePackets(BitSet covered, BitSet others) {
+        BitSet own = (BitSet) covered.clone();
+        own.andNot(others);
+        return packetsOf(own);
+    }
+
+    private int packetsOf(BitSet ids) {
+        int sum = 0;
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            sum += packetsById[id];
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int robots = 3;
+        Partition partition = Partition.PACKETS;
+        int range = 100;
+        String csvFile = "fleet_results.csv";
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--robots": robots = Integer.parseInt(args[++i]); break;
+                case "--partition": partition = Partition.valueOf(args[++i].toUpperCase()); break;
+                case "--range": range = Integer.parseInt(args[++i]); break;
+                case "--csv": csvFile = args[++i]; break;
+                default: positional.add(args[i]);
+            }
+        }
+        if (positional.size() < 2) {
+            System.out.println("Usage: java FleetPlanner [--robots 3] [--partition angle|packets] [--range 100] [--csv fleet_results.csv] <battery> <network file>...");
+            return;
+        }
+
+        double battery = Double.parseDouble(positional.get(0));
+        List<FleetPlan> plans = new ArrayList<>();
+        for (String file : positional.subList(1, positional.size())) {
+            FleetPlan plan = new FleetPlanner(NetworkSnapshot.load(file, range), battery, robots).setPartition(partition).plan(file);
+            plans.add(plan);
+            System.out.println(file + " with " + robots + " robots at " + battery + "Wh:");
+            for (int r = 0; r < robots; r++) {
+                DataExporter.SimulationResult result = plan.getRobotResults().get(r);
+                System.out.println(String.format("  %s: %d packets, %.2f distance, route %s",
+                    result.getNetworkName(), result.getDataPackets(), result.getDistanceTraveled(), plan.getRoutes().get(r)));
+            }
+            System.out.println(String.format("  Fleet: %d packets, %.2f distance, %dms",
+                plan.getFleetResult().getDataPackets(), plan.getFleetResult().getDistanceTraveled(), plan.getFleetResult().getComputationalTime()));
+        }
+
+        new DataExporter().exportFleetToCSV(csvFile, plans);
+        System.out.println("Results exported to " + csvFile);
+    }
+}
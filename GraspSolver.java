@@ -0,0 +1,264 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Multi-start randomized greedy (GRASP) for one network & battery level.
+ *
+ * Start 0 is the plain PCR greedy, so the answer is never worse than the
+ * deterministic route. Every other start builds a route the same way but
+ * picks each next node at random from a restricted candidate list: the
+ * feasible nodes whose PCR is within alpha of the best one, measured between
+ * the worst and the best PCR of the step (alpha 0 is the greedy, 1 is any
+ * feasible node).
+ *
+ * Starts run on a pool of worker threads, each on its own copy of the network
+ * checked out of a NetworkSnapshot. The best route (most packets, then the
+ * shortest distance, then the lowest start number) is kept in an
+ * AtomicReference that workers update with compare-and-set. Each start's
+ * random generator is seeded from the solver seed before any work begins, so
+ * with the same seed and every start finished before the deadline, the result
+ * doesn't depend on the number of threads or the order they run in.
+ *
+ * Usage: java GraspSolver [--starts 64] [--alpha 0.2] [--seed 1] [--deadline ms]
+ *        [--threads N] [--range 100] <battery> <network file>...
+ */
+public class GraspSolver {
+    private NetworkSnapshot snapshot;
+    private double battery;
+    private int starts = 64;
+    private double alpha = 0.2;
+    private long seed = 1;
+    private long deadlineMillis = 0;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    // One finished start
+    public static class Solution {
+        private int start;
+        private int totalPackets;
+        private double totalDistance;
+        private List<Integer> route;
+
+        Solution(int start, Robot robot) {
+            this.start = start;
+            this.totalPackets = robot.getTotalPackets();
+            this.totalDistance = robot.getTotalDistance();
+            this.route = new ArrayList<>();
+            for (Node node : robot.getRoute()) {
+                route.add(node.getId());
+            }
+        }
+
+        // Most packets first, then the shorter distance, then the lower start number
+        boolean isBetterThan(Solution other) {
+            if (other == null || totalPackets != other.totalPackets) {
+                return other == null || totalPackets > other.totalPackets;
+            }
+            if (totalDistance != other.totalDistance) {
+                return totalDistance < other.totalDistance;
+            }
+            return start < other.start;
+        }
+
+        public int getStart() { return start; }
+        public int getTotalPackets() { return totalPackets; }
+        public double getTotalDistance() { return totalDistance; }
+        // Node IDs in visiting order, starting & ending with the depot (ID 0)
+        public List<Integer> getRoute() { return route; }
+    }
+
+    private AtomicReference<Solution> best = new AtomicReference<>();
+    private AtomicInteger completedStarts = new AtomicInteger();
+
+    public GraspSolver(NetworkSnapshot snapshot, double battery) {
+        this.snapshot = snapshot;
+        this.battery = battery;
+    }
+
+    public GraspSolver setStarts(int starts) { this.starts = Math.max(1, starts); return this; }
+    public GraspSolver setAlpha(double alpha) { this.alpha = Math.max(0, Math.min(1, alpha)); return this; }
+    public GraspSolver setSeed(long seed) { this.seed = seed; return this; }
+    // Wall-clock limit for the whole solve in milliseconds, 0 for none
+    public GraspSolver setDeadline(long deadlineMillis) { this.deadlineMillis = deadlineMillis; return this; }
+    public GraspSolver setParallelism(int parallelism) { this.parallelism = Math.max(1, parallelism); return this; }
+
+    public int getCompletedStarts() {
+        return completedStarts.get();
+    }
+
+    /*
+     * Runs the starts and returns the best solution. Starts that haven't finished
+     * by the deadline are dropped, but start 0 always runs to completion so there
+     * is always an answer. If a start throws, no further starts are begun and the
+     * first failure is thrown from here once the running ones are done
+     */
+    public Solution solve() throws InterruptedException {
+        best.set(null);
+        completedStarts.set(0);
+        long deadline = deadlineMillis > 0 ? System.nanoTime() + deadlineMillis * 1_000_000 : Long.MAX_VALUE;
+
+        // Seeds are drawn up front & in order, so a start's choices don't depend on which thread runs it
+        long[] seeds = new long[starts];
+        SplittableRandom root = new SplittableRandom(seed);
+        for (int i = 0; i < starts; i++) {
+            seeds[i] = root.nextLong();
+        }
+
+        AtomicInteger nextStart = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            try {
+                int start;
+                while ((start = nextStart.getAndIncrement()) < starts) {
+                    if (start > 0 && System.nanoTime() >= deadline) {
+                        return;
+                    }
+                    Solution solution = runStart(start, new SplittableRandom(seeds[start]), start == 0 ? Long.MAX_VALUE : deadline);
+                    if (solution != null) {
+                        completedStarts.incrementAndGet();
+                        offer(solution);
+                    }
+                }
+            } catch (Throwable t) {
+                // A thread pool would swallow it, leaving a partial or missing answer
+                failure.compareAndSet(null, t);
+                nextStart.set(starts);
+            }
+        };
+
+        int threads = Math.min(parallelism, starts);
+        if (threads == 1) {
+            worker.run();
+            rethrow(failure.get());
+            return best.get();
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                pool.execute(worker);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        rethrow(failure.get());
+        return best.get();
+    }
+
+    private static void rethrow(Throwable failure) {
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new IllegalStateException("A GRASP start failed", failure);
+        }
+    }
+
+    // Lock-free update of the shared best solution
+    private void offer(Solution solution) {
+        Solution current;
+        do {
+            current = best.get();
+            if (current != null && !solution.isBetterThan(current)) {
+                return;
+            }
+        } while (!best.compareAndSet(current, solution));
+    }
+
+    // Builds one route on a private copy of the network; null if the deadline passed first
+    private Solution runStart(int start, SplittableRandom random, long deadline) {
+        SimulationContext context = snapshot.acquire();
+        try {
+            Robot robot = new Robot(context, battery);
+            if (start == 0) {
+                Node next = robot.selectNextNode();
+                while (next != null) {
+                    robot.moveRobotToNode(next);
+                    next = robot.selectNextNode();
+                }
+            } else {
+                List<Node> candidates = new ArrayList<>();
+                robot.setFeasibleNodes();
+                while (!robot.getFeasibleNodes().isEmpty()) {
+                    if (System.nanoTime() >= deadline) {
+                        return null;
+                    }
+                    robot.moveRobotToNode(pickFromCandidateList(robot, candidates, random));
+                    robot.setFeasibleNodes();
+                }
+            }
+            robot.returnHome();
+            return new Solution(start, robot);
+        } finally {
+            snapshot.release(context);
+        }
+    }
+
+    // Picks uniformly among the feasible nodes whose PCR is within alpha of the step's best
+    private Node pickFromCandidateList(Robot robot, List<Node> candidates, SplittableRandom random) {
+        List<Node> feasible = robot.getFeasibleNodes();
+        double bestPCR = Double.NEGATIVE_INFINITY;
+        double worstPCR = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < feasible.size(); k++) {
+            Node node = feasible.get(k);
+            double pcr = node.getPrize() / robot.feasibleDistance(k);
+            node.setPCR(pcr);
+            bestPCR = Math.max(bestPCR, pcr);
+            worstPCR = Math.min(worstPCR, pcr);
+        }
+        double threshold = Double.isInfinite(bestPCR) ? bestPCR : bestPCR - alpha * (bestPCR - worstPCR);
+        candidates.clear();
+        for (Node node : feasible) {
+            if (node.getPCR() >= threshold) {
+                candidates.add(node);
+            }
+        }
+        return candidates.get(random.nextInt(candidates.size()));
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int starts = 64;
+        double alpha = 0.2;
+        long seed = 1;
+        long deadline = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int range = 100;
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--starts": starts = Integer.parseInt(args[++i]); break;
+                case "--alpha": alpha = Double.parseDouble(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--deadline": deadline = Long.parseLong(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--range": range = Integer.parseInt(args[++i]); break;
+                default: positional.add(args[i]);
+            }
+        }
+        if (positional.size() < 2) {
+            System.out.println("Usage: java GraspSolver [--starts 64] [--alpha 0.2] [--seed 1] [--deadline ms] [--threads N] [--range 100] <battery> <network file>...");
+            return;
+        }
+
+        double battery = Double.parseDouble(positional.get(0));
+        for (String file : positional.subList(1, positional.size())) {
+            NetworkSnapshot snapshot = NetworkSnapshot.load(file, range);
+            long startTime = System.nanoTime();
+            GraspSolver solver = new GraspSolver(snapshot, battery)
+                .setStarts(starts).setAlpha(alpha).setSeed(seed).setDeadline(deadline).setParallelism(threads);
+            Solution solution = solver.solve();
+            System.out.println(String.format("%s: %d packets, %.2f distance (start %d of %d completed, %.1f ms)",
+                file, solution.getTotalPackets(), solution.getTotalDistance(), solution.getStart(),
+                solver.getCompletedStarts(), (System.nanoTime() - startTime) / 1_000_000.0));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/*
+ * Flight Recorder event for one step of the greedy: the robot moving to the
+ * chosen node & draining its network. The event's duration covers the move;
+ * the time spent choosing the node is in selectionTime. Nothing is recorded
+ * unless a recording is running, e.g.
+ *   java -XX:StartFlightRecording=filename=sweep.jfr BatchTester
+ */
+@Name("lreu.GreedyStep")
+@Label("Greedy Step")
+@Category({"LREU", "Simulation"})
+@Description("The robot moving to the node the PCR greedy picked")
+public class GreedyStepEvent extends Event {
+    @Label("Step")
+    int step;
+
+    @Label("Node ID")
+    int nodeId;
+
+    @Label("Prize Collected")
+    int prize;
+
+    @Label("Distance")
+    double distance;
+
+    @Label("Battery Left")
+    double battery;
+
+    @Label("Selection Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long selectionTime;
+
+    @Label("Feasibility Checks")
+    @Description("Nodes tested for feasibility while choosing this node")
+    long feasibilityChecks;
+
+    @Label("Prize Updates")
+    @Description("Prizes decreased by draining the node's network")
+    int prizeUpdates;
+}
@@ -1,67 +1,126 @@
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.IntBuffer;
 import java.util.List;
-import java.util.Scanner;
 
 public class InputNetwork {
-    private List<Node> nodeList;
-    private ListGraph graph;
+    private SimulationContext context;
     private int transmissionRange;
+    private boolean useSpatialIndex;
+    private long parseNanos;
+    private long graphBuildNanos;
+    private long initialPrizeNanos;
+    private BinaryNetworkFile binaryFile;
 
-    // This constructor takes in a transmission range & a network file and runs the file through a fileReader 
-    public InputNetwork(String filename, int transmissionRange) throws FileNotFoundException {
+    // This constructor takes in a transmission range & a network file (text, or binary with the .lnet extension) and runs the file through a fileReader 
+    public InputNetwork(String filename, int transmissionRange) throws IOException {
+        this(filename, transmissionRange, true);
+    }
+
+    // Same as above, but lets the caller pick between the spatial grid and the original nested loop 
+    public InputNetwork(String filename, int transmissionRange, boolean useSpatialIndex) throws IOException {
         this.transmissionRange = transmissionRange;
-        this.nodeList = new ArrayList<>();
+        this.useSpatialIndex = useSpatialIndex;
+        this.context = new SimulationContext();
+        long startTime = System.nanoTime();
         readNetworkFromFile(filename);
+        parseNanos = System.nanoTime() - startTime;
         createGraph();
     }
 
-    // This is where the file gets read; splitting each line into four parts, nodeID, x, y, and packets 
-    private void readNetworkFromFile(String filename) throws FileNotFoundException {
-        Scanner fileScanner = new Scanner(new File(filename));
-        
-        while (fileScanner.hasNextLine()) {
-            String[] parts = fileScanner.nextLine().trim().split("\\s+");
-            if (parts.length == 4) {
-                int id = Integer.parseInt(parts[0]);
-                int x = Integer.parseInt(parts[1]);
-                int y = Integer.parseInt(parts[2]);
-                int packets = Integer.parseInt(parts[3]);
-                
-                // Create a custom node with predefined coordinates and packets
-                Node node = new Node(id, x, y, packets);
-                nodeList.add(node);
-            }
+    /*
+     * This is where the file gets read; each line holds four parts, nodeID, x, y, and packets. 
+     * The file is memory-mapped & parsed straight into arrays (see MappedNetworkLoader), 
+     * and the depot row some network files start with is skipped 
+     */
+    private void readNetworkFromFile(String filename) throws IOException {
+        if (filename.endsWith(BinaryNetworkFile.EXTENSION)) {
+            readBinaryNetwork(filename);
+            return;
+        }
+        MappedNetworkLoader.NetworkColumns columns = MappedNetworkLoader.load(filename);
+        for (int i = 0; i < columns.size(); i++) {
+            // Create a custom node with predefined coordinates and packets
+            Node node = new Node(columns.getIds()[i], columns.getXs()[i], columns.getYs()[i], columns.getPackets()[i]);
+            context.addNode(node);
+        }
+    }
+
+    // Binary networks are already split into columns, so the nodes come straight off the mapped file 
+    private void readBinaryNetwork(String filename) throws IOException {
+        binaryFile = BinaryNetworkFile.open(filename);
+        IntBuffer ids = binaryFile.getIds();
+        IntBuffer xs = binaryFile.getXs();
+        IntBuffer ys = binaryFile.getYs();
+        IntBuffer packets = binaryFile.getPackets();
+        for (int i = 0; i < binaryFile.getNumNodes(); i++) {
+            context.addNode(new Node(ids.get(i), xs.get(i), ys.get(i), packets.get(i)));
         }
-        fileScanner.close();
     }
 
     private void createGraph() {
-        graph = new ListGraph(nodeList.size());
+        long startTime = System.nanoTime();
 
-        // Add edges based on transmission range
-        for (int i = 0; i < nodeList.size(); i++) {
-            for (int j = i + 1; j < nodeList.size(); j++) {
-                if (nodeList.get(i).getDistance(nodeList.get(j)) <= transmissionRange) {
-                    graph.addEdge(nodeList.get(i), nodeList.get(j));
-                }
-            }
+        // Add edges based on transmission range. The spatial grid path stores them in the 
+        // compact CSR graph, the nested loop path keeps the original adjacency list 
+        NetworkGraph graph;
+        if (useSpatialIndex && binaryFile != null && binaryFile.hasAdjacency() && binaryFile.getTransmissionRange() == transmissionRange) {
+            // The binary file already holds the rows for this range, so they are copied in bulk instead of rebuilt 
+            int[] offsets = new int[binaryFile.getNumNodes() + 1];
+            int[] targets = new int[binaryFile.getTargets().remaining()];
+            float[] distances = new float[targets.length];
+            binaryFile.getOffsets().get(offsets);
+            binaryFile.getTargets().get(targets);
+            binaryFile.getDistances().get(distances);
+            graph = new CSRGraph(context, offsets, targets, distances);
+        } else if (useSpatialIndex) {
+            graph = new CSRGraph(context, transmissionRange);
+        } else {
+            ListGraph listGraph = new ListGraph(context);
+            listGraph.addEdgesInRange(transmissionRange, false);
+            graph = listGraph;
         }
+        context.setGraph(graph);
+        long prizeStart = System.nanoTime();
+        graphBuildNanos = prizeStart - startTime;
 
         // Calculate prizes for nodes
-        for (Node node : nodeList) {
+        for (Node node : context.getNodeList()) {
             int prize = graph.calculatePrize(node.getId(), true);
             node.setPrize(prize);
         }
+        initialPrizeNanos = System.nanoTime() - prizeStart;
     }
 
     // Getter Methods 
-    public ListGraph getGraph() {
-        return graph;
+    public SimulationContext getContext() {
+        return context;
+    }
+
+    public NetworkGraph getGraph() {
+        return context.getGraph();
     }
 
     public List<Node> getNodeList() {
-        return nodeList;
+        return context.getNodeList();
+    }
+
+    // Time spent reading the network file, in milliseconds 
+    public double getParseTime() {
+        return parseNanos / 1_000_000.0;
+    }
+
+    // Time spent building the graph, in milliseconds 
+    public double getGraphBuildTime() {
+        return graphBuildNanos / 1_000_000.0;
+    }
+
+    // Time spent calculating the initial prizes once the graph is built, in milliseconds 
+    public double getInitialPrizeTime() {
+        return initialPrizeNanos / 1_000_000.0;
+    }
+
+    // Copies the load phases into a run's metrics 
+    public void recordLoadTimes(SimulationMetrics metrics) {
+        metrics.setLoadTimes(parseNanos, graphBuildNanos, initialPrizeNanos);
     }
 }
\ No newline at end of file
@@ -0,0 +1,351 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Exports networks as NumPy arrays for the ILP & attention models, in place of
+ * Conversion/NetworkAdjacencyList (which prints a dense matrix) and the text
+ * parsing in Attention/networks_to_jsonl.py. For a network NAME it writes:
+ *
+ *   NAME_coords.npy            int32 (m, 2)  x & y
+ *   NAME_packets.npy           int32 (m,)
+ *   NAME_dist.npy              float64 (m*(m-1)/2,) the distance matrix's upper
+ *                              triangle, row by row (scipy's condensed form)
+ *   NAME_cover_rR_offsets.npy  int32 (m+1,)  per transmission range R, the nodes
+ *   NAME_cover_rR_targets.npy  int32         in range of node i are
+ *                                            targets[offsets[i]:offsets[i+1]]
+ *
+ * Index 0 is always the depot at (0,0) with no packets, as in the ILP's Cost
+ * matrix, and the network's nodes follow in file order, so m is one more than
+ * the number of nodes. The depot covers nothing. Every network also gets one
+ * line in index.jsonl, in the order the networks were given, naming its files
+ * and giving its number of nodes ("nodes", depot excluded) and m ("size").
+ *
+ * Files are exported in parallel, each on its own thread, and every array is
+ * streamed to disk through a direct buffer; the distance matrix is never held
+ * in memory. Its size grows with m^2, so it is skipped (and null in the index)
+ * above --max-matrix entries of m.
+ */
+public class InstanceExporter {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int DEFAULT_MAX_MATRIX = 10000;
+
+    private String outputDirectory;
+    private int[] transmissionRanges;
+    private int maxMatrix = DEFAULT_MAX_MATRIX;
+
+    public InstanceExporter(String outputDirectory, int[] transmissionRanges) {
+        this.outputDirectory = outputDirectory;
+        this.transmissionRanges = transmissionRanges;
+    }
+
+    // Largest m (depot included) that still gets a distance matrix; 0 never writes one
+    public InstanceExporter setMaxMatrix(int maxMatrix) {
+        this.maxMatrix = maxMatrix;
+        return this;
+    }
+
+    /*
+     * Exports every network on the given number of threads and writes the index.
+     * Returns the index file
+     */
+    public String exportAll(List<String> networks, int threads) throws IOException, InterruptedException {
+        Files.createDirectories(Paths.get(outputDirectory));
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, networks.size())));
+        String index = new File(outputDirectory, "index.jsonl").getPath();
+        try (Writer out = Files.newBufferedWriter(Paths.get(index), StandardCharsets.UTF_8)) {
+            // Networks from different directories may share a file name, so later ones get a suffix
+            Map<String, Integer> seen = new HashMap<>();
+            List<Future<String>> records = new ArrayList<>();
+            for (String network : networks) {
+                String name = baseName(network);
+                int count = seen.merge(name, 1, Integer::sum);
+                String unique = count == 1 ? name : name + "_" + count;
+                records.add(pool.submit(() -> export(network, unique)));
+            }
+            for (int i = 0; i < records.size(); i++) {
+                try {
+                    out.write(records.get(i).get());
+                    out.write('\n');
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof IOException ? (IOException) cause : new IOException("Exporting " + networks.get(i) + " failed", cause);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return index;
+    }
+
+    // Writes one network's arrays, with file names starting with name, & returns its index line
+    public String export(String filename, String name) throws IOException {
+        int[][] columns = readColumns(filename);
+        int[] ids = columns[0];
+        int[] xs = columns[1];
+        int[] ys = columns[2];
+        int[] packets = columns[3];
+        int m = xs.length;
+
+        StringBuilder record = new StringBuilder(256);
+        record.append("{\"name\": ").append(jsonString(name))
+              .append(", \"source\": ").append(jsonString(filename))
+              .append(", \"nodes\": ").append(m - 1)
+              .append(", \"size\": ").append(m)
+              .append(", \"depot\": 0");
+
+        int[] coords = new int[2 * m];
+        for (int i = 0; i < m; i++) {
+            coords[2 * i] = xs[i];
+            coords[2 * i + 1] = ys[i];
+        }
+        record.append(", \"coords\": ").append(jsonString(writeInts(name + "_coords.npy", coords, m, 2)));
+        record.append(", \"packets\": ").append(jsonString(writeInts(name + "_packets.npy", packets, m)));
+        long totalPackets = 0;
+        for (int packet : packets) {
+            totalPackets += packet;
+        }
+        record.append(", \"total_packets\": ").append(totalPackets);
+
+        String dist = m <= maxMatrix ? writeDistances(name + "_dist.npy", xs, ys) : null;
+        record.append(", \"dist\": ").append(dist == null ? "null" : jsonString(dist));
+
+        record.append(", \"cover\": {");
+        for (int r = 0; r < transmissionRanges.length; r++) {
+            int range = transmissionRanges[r];
+            int[][] cover = coverage(ids, xs, ys, packets, range);
+            String prefix = name + "_cover_r" + range;
+            record.append(r > 0 ? ", " : "").append('"').append(range).append("\": {\"offsets\": ")
+                  .append(jsonString(writeInts(prefix + "_offsets.npy", cover[0], cover[0].length)))
+                  .append(", \"targets\": ")
+                  .append(jsonString(writeInts(prefix + "_targets.npy", cover[1], cover[1].length)))
+                  .append('}');
+        }
+        record.append("}}");
+        return record.toString();
+    }
+
+    private static String baseName(String filename) {
+        String name = new File(filename).getName();
+        return name.lastIndexOf('.') > 0 ? name.substring(0, name.lastIndexOf('.')) : name;
+    }
+
+    // ids, xs, ys & packets with the depot in front; ids[0] is 0
+    private static int[][] readColumns(String filename) throws IOException {
+        int n;
+        int[][] columns;
+        if (filename.endsWith(BinaryNetworkFile.EXTENSION)) {
+            BinaryNetworkFile file = BinaryNetworkFile.open(filename);
+            n = file.getNumNodes();
+            columns = new int[4][n + 1];
+            file.getIds().get(columns[0], 1, n);
+            file.getXs().get(columns[1], 1, n);
+            file.getYs().get(columns[2], 1, n);
+            file.getPackets().get(columns[3], 1, n);
+        } else {
+            MappedNetworkLoader.NetworkColumns loaded = MappedNetworkLoader.load(filename);
+            n = loaded.size();
+            columns = new int[4][n + 1];
+            System.arraycopy(loaded.getIds(), 0, columns[0], 1, n);
+            System.arraycopy(loaded.getXs(), 0, columns[1], 1, n);
+            System.arraycopy(loaded.getYs(), 0, columns[2], 1, n);
+            System.arraycopy(loaded.getPackets(), 0, columns[3], 1, n);
+        }
+        return columns;
+    }
+
+    /*
+     * Offsets & targets of the nodes in range of each node, as array positions.
+     * The pairs are found by CSRGraph, the same graph a simulation uses
+     */
+    private static int[][] coverage(int[] ids, int[] xs, int[] ys, int[] packets, int range) {
+        int m = xs.length;
+        SimulationContext context = new SimulationContext();
+        int maxId = 0;
+        for (int i = 1; i < m; i++) {
+            context.addNode(new Node(ids[i], xs[i], ys[i], packets[i]));
+            maxId = Math.max(maxId, ids[i]);
+        }
+        CSRGraph graph = new CSRGraph(context, range);
+
+        // Node IDs are 1..n in file order in every bundled network, but map them anyway
+        int[] positionOfId = new int[maxId + 1];
+        for (int i = 1; i < m; i++) {
+            positionOfId[ids[i]] = i;
+        }
+        int[] offsets = new int[m + 1];
+        int[] targets = new int[graph.getTargets().length];
+        int count = 0;
+        for (int i = 1; i < m; i++) {
+            offsets[i] = count;
+            for (int k = 0; k < graph.getDegree(ids[i]); k++) {
+                targets[count++] = positionOfId[graph.getNeighbor(ids[i], k)];
+            }
+        }
+        offsets[m] = count;
+        return new int[][] {offsets, Arrays.copyOf(targets, count)};
+    }
+
+    // Streams the upper triangle of the distance matrix, computed like Node.getDistance
+    private String writeDistances(String filename, int[] xs, int[] ys) throws IOException {
+        long m = xs.length;
+        long entries = m * (m - 1) / 2;
+        try (FileChannel channel = open(filename)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(npyHeader("<f8", entries));
+            for (int i = 0; i < xs.length; i++) {
+                for (int j = i + 1; j < xs.length; j++) {
+                    if (buffer.remaining() < 8) {
+                        flush(channel, buffer);
+                    }
+                    long dx = (long) xs[i] - xs[j];
+                    long dy = (long) ys[i] - ys[j];
+                    buffer.putDouble(Math.sqrt(dx*dx + dy*dy));
+                }
+            }
+            flush(channel, buffer);
+        }
+        return filename;
+    }
+
+    private String writeInts(String filename, int[] values, long... shape) throws IOException {
+        try (FileChannel channel = open(filename)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(npyHeader("<i4", shape));
+            int written = 0;
+            while (written < values.length) {
+                if (buffer.remaining() < 4) {
+                    flush(channel, buffer);
+                }
+                int batch = Math.min(values.length - written, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(values, written, batch);
+                buffer.position(buffer.position() + batch * 4);
+                written += batch;
+            }
+            flush(channel, buffer);
+        }
+        return filename;
+    }
+
+    private FileChannel open(String filename) throws IOException {
+        return FileChannel.open(Paths.get(outputDirectory, filename), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /*
+     * Magic, version 1.0 & the header dictionary, padded with spaces so the data
+     * starts on a 64-byte boundary as the .npy format asks
+     */
+    static ByteBuffer npyHeader(String descr, long... shape) {
+        StringBuilder dict = new StringBuilder("{'descr': '").append(descr).append("', 'fortran_order': False, 'shape': (");
+        for (int i = 0; i < shape.length; i++) {
+            dict.append(i > 0 ? ", " : "").append(shape[i]);
+        }
+        dict.append(shape.length == 1 ? ",), }" : "), }");
+        int length = 10 + dict.length() + 1;
+        int padded = (length + 63) / 64 * 64;
+        while (dict.length() < padded - 11) {
+            dict.append(' ');
+        }
+        dict.append('\n');
+
+        ByteBuffer header = ByteBuffer.allocate(padded).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 0x93).put("NUMPY".getBytes(StandardCharsets.US_ASCII));
+        header.put((byte) 1).put((byte) 0);
+        header.putShort((short) dict.length());
+        header.put(dict.toString().getBytes(StandardCharsets.US_ASCII));
+        header.flip();
+        return header;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    // Network files as given, and the .txt & .lnet files of directories in natural order
+    private static List<String> expandInputs(List<String> inputs) {
+        List<String> files = new ArrayList<>();
+        for (String input : inputs) {
+            File file = new File(input);
+            if (!file.isDirectory()) {
+                files.add(input);
+                continue;
+            }
+            String[] names = file.list((dir, name) -> name.endsWith(".txt") || name.endsWith(BinaryNetworkFile.EXTENSION));
+            if (names == null) {
+                continue;
+            }
+            Arrays.sort(names, SweepRunner::compareNatural);
+            for (String name : names) {
+                files.add(new File(file, name).getPath());
+            }
+        }
+        return files;
+    }
+
+    public static void main(String[] args) {
+        String outputDirectory = "instances";
+        int[] ranges = {100};
+        int maxMatrix = DEFAULT_MAX_MATRIX;
+        int threads = ParallelSweep.configuredParallelism();
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out": outputDirectory = args[++i]; break;
+                case "--ranges": ranges = Arrays.stream(args[++i].split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray(); break;
+                case "--max-matrix": maxMatrix = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                default: inputs.add(args[i]);
+            }
+        }
+        List<String> networks = expandInputs(inputs);
+        if (networks.isEmpty()) {
+            System.out.println("Usage: java InstanceExporter [--out dir] [--ranges 100,200] [--max-matrix M] [--threads T] <network file or directory>...");
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        try {
+            String index = new InstanceExporter(outputDirectory, ranges).setMaxMatrix(maxMatrix).exportAll(networks, threads);
+            System.out.println(String.format("Exported %d networks to %s (%.1f ms)", networks.size(), index, (System.nanoTime() - startTime) / 1_000_000.0));
+        } catch (IOException e) {
+            System.out.println("Export failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            System.out.println("Export interrupted");
+        }
+    }
+}
@@ -2,7 +2,7 @@ import java.util.List;
 import java.util.ArrayList;
 
 
-public class ListGraph{
+public class ListGraph implements NetworkGraph {
     /*
      * This adjacency list graph representation stores a list of edges 
      * for each node created. The edge represents a connection between
@@ -11,21 +11,62 @@ public class ListGraph{
      * a node's ID value by 1, & getting values from adj list is done by vice versa 
     */
     private List<List<Edge>> adjList;
+    private SimulationContext context;
 
-    ListGraph(int numVertices) {
+    ListGraph(SimulationContext context) {
+        int numVertices = context.getNumNodes();
+        this.context = context;
         adjList = new ArrayList<>(numVertices);
         for (int i=0; i<numVertices; i++)
             adjList.add(new ArrayList<>());
     }
 
     public void addEdge(Node sourceNode, Node connectedNode) {
-        adjList.get(sourceNode.getId()-1).add(new Edge(sourceNode.getId(), connectedNode.getId(), sourceNode.getPackets(), connectedNode.getDistance(sourceNode)));
-        adjList.get(connectedNode.getId()-1).add(new Edge(connectedNode.getId(), sourceNode.getId(), connectedNode.getPackets(), sourceNode.getDistance(connectedNode)));
+        adjList.get(sourceNode.getId()-1).add(new Edge(sourceNode.getId(), connectedNode.getId(), connectedNode.getDistance(sourceNode)));
+        adjList.get(connectedNode.getId()-1).add(new Edge(connectedNode.getId(), sourceNode.getId(), sourceNode.getDistance(connectedNode)));
     }
 
     public List<List<Edge>> getAdjList(){ 
         return adjList; 
     }
+
+    public int getNumVertices(){
+        return adjList.size();
+    }
+
+    public int getDegree(int nodeId){
+        return adjList.get(nodeId-1).size();
+    }
+
+    public int getNeighbor(int nodeId, int k){
+        return adjList.get(nodeId-1).get(k).getDestination();
+    }
+
+    public double getNeighborDistance(int nodeId, int k){
+        return adjList.get(nodeId-1).get(k).getDistance();
+    }
+
+    /*
+     * This method connects every pair of nodes that are within transmission range 
+     * of each other. The spatial grid only compares nodes in neighboring cells, while 
+     * the nested loop compares every pair; both add the same edges in the same order, 
+     * the loop is kept so the two setup times can be compared 
+     */
+    public void addEdgesInRange(int transmissionRange, boolean useSpatialIndex){
+        List<Node> nodeList = context.getNodeList();
+        if(useSpatialIndex){
+            SpatialGrid grid = new SpatialGrid(nodeList, transmissionRange);
+            grid.forEachPairInRange(transmissionRange, (i, j) -> this.addEdge(nodeList.get(i), nodeList.get(j)));
+            return;
+        }
+        for (int i = 0; i < nodeList.size(); i++) {
+            for (int j = i + 1; j < nodeList.size(); j++) {
+                if (nodeList.get(i).getDistance(nodeList.get(j)) <= transmissionRange) {
+                    this.addEdge(nodeList.get(i), nodeList.get(j));
+                }
+            }
+        }
+    }
     
 
     /*
@@ -38,10 +79,10 @@ public class ListGraph{
      */
     public int calculatePrize(int nodeId, boolean initial){
         List<Edge> edgesOfSourceNode = adjList.get(nodeId-1);
-        Node sourceNode = Node.getNodeById(nodeId);
+        Node sourceNode = context.getNode(nodeId);
         int initialPrize = sourceNode.getPackets(); 
         for(int i = 0; i < edgesOfSourceNode.size(); i++){
-            Node connectedNode = Node.getNodeById(edgesOfSourceNode.get(i).getDestination());
+            Node connectedNode = context.getNode(edgesOfSourceNode.get(i).getDestination());
             initialPrize += connectedNode.getPackets();
             if(initial){
                 sourceNode.addToNetwork(connectedNode);
@@ -49,27 +90,4 @@ public class ListGraph{
         }
         return initialPrize; 
     }
-
-
-    /* 
-     * This method 
-     */
-    public void updatePrizes(List<Node> network){
-        for(Node node : network){
-            node.setPrize(this.calculatePrize(node.getId(), false));
-        }
-        int nodeID = 0; 
-        for(List<Edge> edgeList : this.getAdjList()){
-            nodeID++; 
-            for(Edge edge : edgeList){
-                Node node = Node.getNodeById(nodeID);
-                Node neighbor = Node.getNodeById(edge.getDestination());
-                if(network.contains(neighbor)){
-                    node.setPrize(this.calculatePrize(nodeID, false));
-                }
-            }
-        }
-    }
-
-    
-} 
\ No newline at end of file
+}
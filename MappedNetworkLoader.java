@@ -0,0 +1,256 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * This loader reads a network file by memory-mapping it and parsing the digits
+ * straight out of the mapped bytes into primitive arrays, so no String, array
+ * or Scanner token is created per line. Like the Scanner version in
+ * InputNetwork, a line must hold exactly four whitespace separated integers
+ * (nodeID, x, y, packets) to count as a node; any other line is skipped.
+ *
+ * Both layouts of the Networks folder are accepted: the N*.txt files that start
+ * at node 1 and the files that start with a "0 0 0 0" row for the depot. The
+ * depot row is dropped, since the robot always starts from its own depot at (0,0).
+ *
+ * Large files are split at line boundaries into chunks that are mapped and
+ * parsed in parallel, then stitched back together in file order.
+ */
+public class MappedNetworkLoader {
+    // Files smaller than two chunks are parsed on the calling thread
+    private static final long DEFAULT_CHUNK_SIZE = 32L * 1024 * 1024;
+
+    // The parsed nodes, one entry per node in file order
+    public static class NetworkColumns {
+        private int size;
+        private int[] ids;
+        private int[] xs;
+        private int[] ys;
+        private int[] packets;
+
+        public NetworkColumns(int size, int[] ids, int[] xs, int[] ys, int[] packets) {
+            this.size = size;
+            this.ids = ids;
+            this.xs = xs;
+            this.ys = ys;
+            this.packets = packets;
+        }
+
+        public int size() { return size; }
+        public int[] getIds() { return ids; }
+        public int[] getXs() { return xs; }
+        public int[] getYs() { return ys; }
+        public int[] getPackets() { return packets; }
+    }
+
+    public static NetworkColumns load(String filename) throws IOException {
+        return load(filename, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public static NetworkColumns load(String filename, int parallelism, long chunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            List<long[]> chunks = splitIntoChunks(channel, fileSize, Math.max(1, chunkSize));
+
+            List<ColumnBuilder> parts = new ArrayList<>();
+            if (parallelism <= 1 || chunks.size() == 1) {
+                for (long[] chunk : chunks) {
+                    parts.add(parseChunk(channel, chunk[0], chunk[1]));
+                }
+            } else {
+                ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, chunks.size()));
+                try {
+                    List<Future<ColumnBuilder>> futures = new ArrayList<>();
+                    for (long[] chunk : chunks) {
+                        futures.add(pool.submit(() -> parseChunk(channel, chunk[0], chunk[1])));
+                    }
+                    for (Future<ColumnBuilder> future : futures) {
+                        parts.add(future.get());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while loading " + filename, e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IOException("Failed to load " + filename, e.getCause());
+                } finally {
+                    pool.shutdown();
+                }
+            }
+            return ColumnBuilder.concat(parts);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(filename + " (No such file or directory)");
+        }
+    }
+
+    /*
+     * Cuts [0, fileSize) into pieces of about chunkSize bytes, moving each cut
+     * forward to just after the next newline so no line is split in two
+     */
+    private static List<long[]> splitIntoChunks(FileChannel channel, long fileSize, long chunkSize) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long start = 0;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        while (start < fileSize) {
+            long end = Math.min(fileSize, start + chunkSize);
+            if (fileSize - end < chunkSize / 2) {
+                end = fileSize;
+            }
+            while (end < fileSize) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read <= 0) {
+                    end = fileSize;
+                    break;
+                }
+                int newline = -1;
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += read;
+            }
+            chunks.add(new long[] {start, end});
+            start = end;
+        }
+        if (chunks.isEmpty()) {
+            chunks.add(new long[] {0, 0});
+        }
+        return chunks;
+    }
+
+    private static ColumnBuilder parseChunk(FileChannel channel, long start, long end) throws IOException {
+        ColumnBuilder columns = new ColumnBuilder((int) Math.min(1 << 20, (end - start) / 12 + 16));
+        if (end <= start) {
+            return columns;
+        }
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int length = bytes.limit();
+        int[] fields = new int[4];
+        int pos = 0;
+
+        while (pos < length) {
+            int count = 0;
+            int invalidAt = -1;
+            // Read the tokens on this line
+            while (pos < length) {
+                byte b = bytes.get(pos);
+                if (b == '\n') {
+                    pos++;
+                    break;
+                }
+                if (isSeparator(b)) {
+                    pos++;
+                    continue;
+                }
+                int tokenStart = pos;
+                boolean negative = b == '-';
+                if (b == '-' || b == '+') {
+                    pos++;
+                }
+                long value = 0;
+                int digits = 0;
+                boolean valid = true;
+                while (pos < length && !isSeparator(bytes.get(pos))) {
+                    b = bytes.get(pos++);
+                    if (b < '0' || b > '9' || value > Integer.MAX_VALUE) {
+                        valid = false;
+                    } else {
+                        value = value * 10 + (b - '0');
+                        digits++;
+                    }
+                }
+                value = negative ? -value : value;
+                if (!valid || digits == 0 || value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+                    if (invalidAt < 0) {
+                        invalidAt = tokenStart;
+                    }
+                } else if (count < 4) {
+                    fields[count] = (int) value;
+                }
+                count++;
+            }
+
+            // A node line has exactly four numbers, just like the Scanner version which
+            // also gave up on a four-token line that didn't parse. The depot row (ID 0) is left out
+            if (count == 4) {
+                if (invalidAt >= 0) {
+                    throw new NumberFormatException("Invalid number in network file at byte " + (start + invalidAt));
+                }
+                if (fields[0] != 0) {
+                    columns.add(fields[0], fields[1], fields[2], fields[3]);
+                }
+            }
+        }
+        return columns;
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '\f';
+    }
+
+    // Growable interleaved id/x/y/packets storage for one chunk
+    private static class ColumnBuilder {
+        private int[] data;
+        private int size;
+
+        ColumnBuilder(int capacity) {
+            data = new int[Math.max(4, capacity * 4)];
+        }
+
+        void add(int id, int x, int y, int packets) {
+            if (size * 4 + 4 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size * 4] = id;
+            data[size * 4 + 1] = x;
+            data[size * 4 + 2] = y;
+            data[size * 4 + 3] = packets;
+            size++;
+        }
+
+        static NetworkColumns concat(List<ColumnBuilder> parts) {
+            int total = 0;
+            for (ColumnBuilder part : parts) {
+                total += part.size;
+            }
+            int[] ids = new int[total];
+            int[] xs = new int[total];
+            int[] ys = new int[total];
+            int[] packets = new int[total];
+            int i = 0;
+            for (ColumnBuilder part : parts) {
+                for (int k = 0; k < part.size; k++, i++) {
+                    ids[i] = part.data[k * 4];
+                    xs[i] = part.data[k * 4 + 1];
+                    ys[i] = part.data[k * 4 + 2];
+                    packets[i] = part.data[k * 4 + 3];
+                }
+            }
+            return new NetworkColumns(total, ids, xs, ys, packets);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates random networks from a seed, without any prompts.
+ *
+ * Nodes get IDs 1..n, coordinates in [0, width] x [0, length] and a packet
+ * count in [minPackets, maxPackets]. Three layouts are supported:
+ *   uniform   - nodes spread evenly over the field
+ *   clustered - each node lands uniformly inside one of the cluster disks
+ *   hotspot   - each node is drawn from a Gaussian around one of the hotspots,
+ *               with a share of the nodes spread uniformly as background
+ *
+ * The nodes are generated in chunks of CHUNK_SIZE on a pool of threads. Every
+ * chunk has its own SplittableRandom, split off the seed before any work starts,
+ * so the same seed & parameters give the same network whatever the number of
+ * threads. Chunks go straight to the output file (text in the Networks/ format,
+ * or the binary .lnet format) rather than holding the whole network in memory.
+ *
+ * Usage: java NetworkGenerator [--nodes 100] [--width 1000] [--length 1000] [--packets 1-50]
+ *        [--layout uniform|clustered|hotspot] [--clusters 8] [--spread R] [--seed 1]
+ *        [--count 1] [--out Networks] [--prefix G] [--binary] [--threads N]
+ */
+public class NetworkGenerator {
+    public enum Layout { UNIFORM, CLUSTERED, HOTSPOT }
+
+    static final int CHUNK_SIZE = 1 << 16;
+    // Share of the nodes of a hotspot layout placed uniformly instead of around a hotspot
+    private static final double HOTSPOT_BACKGROUND = 0.2;
+
+    private int numNodes = 100;
+    private int width = 1000;
+    private int length = 1000;
+    private int minPackets = 1;
+    private int maxPackets = 50;
+    private Layout layout = Layout.UNIFORM;
+    private int clusters = 8;
+    private double spread = 0;
+    private long seed = 1;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public NetworkGenerator setNumNodes(int numNodes) { this.numNodes = Math.max(0, numNodes); return this; }
+    public NetworkGenerator setField(int width, int length) { this.width = width; this.length = length; return this; }
+    public NetworkGenerator setPackets(int minPackets, int maxPackets) { this.minPackets = minPackets; this.maxPackets = maxPackets; return this; }
+    public NetworkGenerator setLayout(Layout layout) { this.layout = layout; return this; }
+    public NetworkGenerator setClusters(int clusters) { this.clusters = Math.max(1, clusters); return this; }
+    // Cluster radius, or the standard deviation of a hotspot; 0 picks a twentieth of the shorter side of the field
+    public NetworkGenerator setSpread(double spread) { this.spread = Math.max(0, spread); return this; }
+    public NetworkGenerator setSeed(long seed) { this.seed = seed; return this; }
+    public NetworkGenerator setParallelism(int parallelism) { this.parallelism = Math.max(1, parallelism); return this; }
+
+    // Everything a chunk needs, drawn from the seed before the chunks run
+    private static class Plan {
+        double[] centerX;
+        double[] centerY;
+        double spread;
+        long[] chunkSeeds;
+    }
+
+    // Handles one generated chunk: count nodes starting at index start, held in the arrays from index 0
+    private interface ChunkTask<T> {
+        T run(int start, int count, int[] xs, int[] ys, int[] packets) throws IOException;
+    }
+
+    // The whole network in memory, in the same columns MappedNetworkLoader reads
+    public MappedNetworkLoader.NetworkColumns generate() throws IOException {
+        int[] ids = new int[numNodes];
+        int[] xs = new int[numNodes];
+        int[] ys = new int[numNodes];
+        int[] packets = new int[numNodes];
+        runChunks((start, count, chunkXs, chunkYs, chunkPackets) -> {
+            for (int i = 0; i < count; i++) {
+                ids[start + i] = start + i + 1;
+            }
+            System.arraycopy(chunkXs, 0, xs, start, count);
+            System.arraycopy(chunkYs, 0, ys, start, count);
+            System.arraycopy(chunkPackets, 0, packets, start, count);
+            return null;
+        }, false);
+        return new MappedNetworkLoader.NetworkColumns(numNodes, ids, xs, ys, packets);
+    }
+
+    /*
+     * Writes the network as text, one "id x y packets" line per node. Chunks are
+     * formatted in parallel but written in order, with at most a few chunks per
+     * thread waiting to be written
+     */
+    public void writeText(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            runChunks((start, count, xs, ys, packets) -> formatChunk(start, count, xs, ys, packets), true,
+                bytes -> {
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                });
+        }
+    }
+
+    /*
+     * Writes the network in the binary format, without adjacency. The file size
+     * is known up front, so every chunk writes its part of each column straight
+     * to its place in the file
+     */
+    public void writeBinary(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = BinaryNetworkFile.header(numNodes, false, -1, 0);
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            runChunks((start, count, xs, ys, packets) -> {
+                ByteBuffer column = ByteBuffer.allocate(4 * count).order(ByteOrder.LITTLE_ENDIAN);
+                for (int c = 0; c < 4; c++) {
+                    column.clear();
+                    for (int i = 0; i < count; i++) {
+                        column.putInt(c == 0 ? start + i + 1 : c == 1 ? xs[i] : c == 2 ? ys[i] : packets[i]);
+                    }
+                    column.flip();
+                    long position = BinaryNetworkFile.columnPosition(c, numNodes, start);
+                    while (column.hasRemaining()) {
+                        position += channel.write(column, position);
+                    }
+                }
+                return null;
+            }, false);
+        }
+    }
+
+    // Text if the name doesn't end with .lnet, binary if it does
+    public void write(String filename) throws IOException {
+        if (filename.endsWith(BinaryNetworkFile.EXTENSION)) {
+            writeBinary(filename);
+        } else {
+            writeText(filename);
+        }
+    }
+
+    private interface ChunkWriter<T> {
+        void write(T output) throws IOException;
+    }
+
+    private <T> void runChunks(ChunkTask<T> task, boolean ordered) throws IOException {
+        runChunks(task, ordered, null);
+    }
+
+    /*
+     * Runs task on every chunk. With ordered set, the results are handed to writer
+     * in chunk order as they finish, and no more than two chunks per thread are
+     * started ahead of the one being written
+     */
+    private <T> void runChunks(ChunkTask<T> task, boolean ordered, ChunkWriter<T> writer) throws IOException {
+        Plan plan = plan();
+        int chunks = plan.chunkSeeds.length;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, chunks)));
+        try {
+            ArrayDeque<Future<T>> pending = new ArrayDeque<>();
+            int window = ordered ? 2 * parallelism : chunks;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int current = chunk;
+                pending.add(pool.submit(() -> {
+                    int start = current * CHUNK_SIZE;
+                    int count = Math.min(CHUNK_SIZE, numNodes - start);
+                    int[] xs = new int[count];
+                    int[] ys = new int[count];
+                    int[] packets = new int[count];
+                    fillChunk(plan, current, count, xs, ys, packets);
+                    return task.run(start, count, xs, ys, packets);
+                }));
+                if (pending.size() >= window) {
+                    finish(pending.poll(), writer);
+                }
+            }
+            while (!pending.isEmpty()) {
+                finish(pending.poll(), writer);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private <T> void finish(Future<T> future, ChunkWriter<T> writer) throws IOException {
+        try {
+            T output = future.get();
+            if (writer != null) {
+                writer.write(output);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating a network", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Generating a chunk failed", e.getCause());
+        }
+    }
+
+    // Draws the cluster centers & one seed per chunk, in that order, from the generator's seed
+    private Plan plan() {
+        SplittableRandom root = new SplittableRandom(seed);
+        Plan plan = new Plan();
+        plan.spread = spread > 0 ? spread : Math.max(1, Math.min(width, length) / 20.0);
+        int centers = layout == Layout.UNIFORM ? 0 : clusters;
+        plan.centerX = new double[centers];
+        plan.centerY = new double[centers];
+        for (int c = 0; c < centers; c++) {
+            plan.centerX[c] = root.nextDouble() * width;
+            plan.centerY[c] = root.nextDouble() * length;
+        }
+        int chunks = (int) ((numNodes + (long) CHUNK_SIZE - 1) / CHUNK_SIZE);
+        plan.chunkSeeds = new long[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            plan.chunkSeeds[chunk] = root.nextLong();
+        }
+        return plan;
+    }
+
+    private void fillChunk(Plan plan, int chunk, int count, int[] xs, int[] ys, int[] packets) {
+        SplittableRandom random = new SplittableRandom(plan.chunkSeeds[chunk]);
+        for (int i = 0; i < count; i++) {
+            if (layout == Layout.UNIFORM || (layout == Layout.HOTSPOT && random.nextDouble() < HOTSPOT_BACKGROUND)) {
+                // Same range as the nodes AutomatedSetup used to place: 0 to width & length, inclusive
+                xs[i] = random.nextInt(width + 1);
+                ys[i] = random.nextInt(length + 1);
+            } else {
+                int c = random.nextInt(plan.centerX.length);
+                double dx;
+                double dy;
+                if (layout == Layout.CLUSTERED) {
+                    // Uniform over the disk: the square root keeps the density even out to the edge
+                    double radius = plan.spread * Math.sqrt(random.nextDouble());
+                    double angle = 2 * Math.PI * random.nextDouble();
+                    dx = radius * Math.cos(angle);
+                    dy = radius * Math.sin(angle);
+                } else {
+                    dx = plan.spread * random.nextGaussian();
+                    dy = plan.spread * random.nextGaussian();
+                }
+                xs[i] = clamp(plan.centerX[c] + dx, width);
+                ys[i] = clamp(plan.centerY[c] + dy, length);
+            }
+            packets[i] = random.nextInt(maxPackets - minPackets + 1) + minPackets;
+        }
+    }
+
+    private static int clamp(double value, int max) {
+        return (int) Math.max(0, Math.min(max, Math.round(value)));
+    }
+
+    // Formats a chunk as text lines into one buffer, without going through String
+    private static ByteBuffer formatChunk(int start, int count, int[] xs, int[] ys, int[] packets) {
+        // Four numbers of at most 11 characters each plus separators
+        byte[] bytes = new byte[count * 48];
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            position = appendInt(bytes, position, start + i + 1);
+            bytes[position++] = ' ';
+            position = appendInt(bytes, position, xs[i]);
+            bytes[position++] = ' ';
+            position = appendInt(bytes, position, ys[i]);
+            bytes[position++] = ' ';
+            position = appendInt(bytes, position, packets[i]);
+            bytes[position++] = '\n';
+        }
+        return ByteBuffer.wrap(bytes, 0, position);
+    }
+
+    private static int appendInt(byte[] bytes, int position, int value) {
+        long v = value;
+        if (v < 0) {
+            bytes[position++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long rest = v / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int d = position + digits - 1; d >= position; d--) {
+            bytes[d] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        return position + digits;
+    }
+
+    public static void main(String[] args) throws IOException {
+        NetworkGenerator generator = new NetworkGenerator();
+        int width = 1000;
+        int length = 1000;
+        long seed = 1;
+        int count = 1;
+        String outputDirectory = "Networks";
+        String prefix = "G";
+        boolean binary = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--nodes": generator.setNumNodes(Integer.parseInt(args[++i])); break;
+                case "--width": width = Integer.parseInt(args[++i]); break;
+                case "--length": length = Integer.parseInt(args[++i]); break;
+                case "--packets": {
+                    String[] range = args[++i].split("-");
+                    generator.setPackets(Integer.parseInt(range[0]), Integer.parseInt(range[range.length - 1]));
+                    break;
+                }
+                case "--layout": generator.setLayout(Layout.valueOf(args[++i].toUpperCase())); break;
+                case "--clusters": generator.setClusters(Integer.parseInt(args[++i])); break;
+                case "--spread": generator.setSpread(Double.parseDouble(args[++i])); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--count": count = Integer.parseInt(args[++i]); break;
+                case "--out": outputDirectory = args[++i]; break;
+                case "--prefix": prefix = args[++i]; break;
+                case "--binary": binary = true; break;
+                case "--threads": generator.setParallelism(Integer.parseInt(args[++i])); break;
+                default:
+                    System.out.println("Usage: java NetworkGenerator [--nodes 100] [--width 1000] [--length 1000] [--packets 1-50]");
+                    System.out.println("       [--layout uniform|clustered|hotspot] [--clusters 8] [--spread R] [--seed 1]");
+                    System.out.println("       [--count 1] [--out Networks] [--prefix G] [--binary] [--threads N]");
+                    return;
+            }
+        }
+        generator.setField(width, length);
+
+        new File(outputDirectory).mkdirs();
+        for (int k = 1; k <= count; k++) {
+            // Network k uses seed + k - 1, so any one of them can be regenerated on its own
+            String filename = new File(outputDirectory, prefix + k + (binary ? BinaryNetworkFile.EXTENSION : ".txt")).getPath();
+            long startTime = System.nanoTime();
+            generator.setSeed(seed + k - 1).write(filename);
+            System.out.println(String.format("%s: %d nodes (%.1f ms)", filename, generator.numNodes, (System.nanoTime() - startTime) / 1_000_000.0));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ * Common view of the sensor network's connections, so the prize calculation 
+ * and the runners don't depend on how the adjacency is stored. Nodes are 
+ * addressed by their ID (1..n), neighbors of a node by their position k in 
+ * that node's neighbor list 
+ */
+public interface NetworkGraph {
+    int getNumVertices();
+
+    int getDegree(int nodeId);
+
+    // ID of the k-th node connected to the given node 
+    int getNeighbor(int nodeId, int k);
+
+    // Distance between the given node and its k-th neighbor 
+    double getNeighborDistance(int nodeId, int k);
+
+    // Sum of the node's packets & its neighbors' packets (see ListGraph for the initial flag) 
+    int calculatePrize(int nodeId, boolean initial);
+}
@@ -0,0 +1,383 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/*
+ * Draws a network and a robot's route for a given viewport, without any Swing
+ * state, so the same drawing is used on screen (Visualization) and off screen.
+ *
+ * The nodes are indexed in a SpatialGrid once, and each frame only looks at the
+ * cells inside the viewport. How much is drawn depends on how many nodes are
+ * visible: node IDs & packet counts only when few are, transmission circles only
+ * when they're large enough to see, and a density heatmap of the packets
+ * instead of single dots once the nodes are too close together to tell apart.
+ * A renderer can be shared by threads, as long as the nodes aren't changed.
+ */
+public class NetworkRenderer {
+    // Radius of a node dot in field units, as in the original Visualization
+    private static final int DOT_SIZE = 6;
+    private static final int LABEL_LIMIT = 1500;
+    private static final int CIRCLE_LIMIT = 5000;
+    private static final int MIN_CIRCLE_PIXELS = 4;
+    // Dots give way to the heatmap below this many screen pixels per visible node
+    private static final int PIXELS_PER_DOT = 64;
+    private static final int HEAT_BIN = 4;
+    private static final Color COVERED = new Color(0, 160, 60);
+
+    private List<Node> nodes;
+    private int transmission;
+    private SpatialGrid grid;
+    private double minX, minY, maxX, maxY;
+    private volatile int lastVisibleCount;
+
+    // List indices of the nodes inside a viewport; one per paint, so a renderer can be shared between threads
+    private static class Visible {
+        int[] indices = new int[1024];
+        int count;
+    }
+
+    /*
+     * Which part of the field is on screen: the field point at the centre of
+     * the screen & the number of pixels per field unit. Field y points up,
+     * screen y points down
+     */
+    public static class Viewport {
+        public int width;
+        public int height;
+        public double centerX;
+        public double centerY;
+        public double scale;
+
+        public Viewport(int width, int height, double centerX, double centerY, double scale) {
+            this.width = width;
+            this.height = height;
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.scale = scale;
+        }
+
+        public Viewport copy() {
+            return new Viewport(width, height, centerX, centerY, scale);
+        }
+
+        public double screenX(double x) { return width / 2.0 + (x - centerX) * scale; }
+        public double screenY(double y) { return height / 2.0 - (y - centerY) * scale; }
+        public double fieldX(double screenX) { return centerX + (screenX - width / 2.0) / scale; }
+        public double fieldY(double screenY) { return centerY - (screenY - height / 2.0) / scale; }
+
+        // Keeps the field point under the given screen position where it is while the scale changes
+        public void zoomAt(double screenX, double screenY, double factor) {
+            double x = fieldX(screenX);
+            double y = fieldY(screenY);
+            scale *= factor;
+            centerX = x - (screenX - width / 2.0) / scale;
+            centerY = y + (screenY - height / 2.0) / scale;
+        }
+
+        public void pan(double dx, double dy) {
+            centerX -= dx / scale;
+            centerY += dy / scale;
+        }
+
+        public boolean sameAs(Viewport other) {
+            return other != null && width == other.width && height == other.height &&
+                centerX == other.centerX && centerY == other.centerY && scale == other.scale;
+        }
+    }
+
+    public NetworkRenderer(List<Node> nodes, int transmission) {
+        this.nodes = nodes;
+        this.transmission = transmission;
+        minX = minY = Double.POSITIVE_INFINITY;
+        maxX = maxY = Double.NEGATIVE_INFINITY;
+        for (Node node : nodes) {
+            minX = Math.min(minX, node.getX());
+            minY = Math.min(minY, node.getY());
+            maxX = Math.max(maxX, node.getX());
+            maxY = Math.max(maxY, node.getY());
+        }
+        int cellSize = 1;
+        if (!nodes.isEmpty()) {
+            // About eight nodes per cell, as in PCRSelector
+            double area = (maxX - minX + 1) * (maxY - minY + 1);
+            cellSize = (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.sqrt(area * 8 / nodes.size())));
+        }
+        grid = new SpatialGrid(nodes, cellSize);
+    }
+
+    // A viewport showing the whole field (or every node, if the field size isn't known) with padding around it
+    public Viewport fit(int width, int height, double fieldWidth, double fieldHeight, int padding) {
+        double fromX = 0, fromY = 0, toX = fieldWidth, toY = fieldHeight;
+        if (fieldWidth <= 0 || fieldHeight <= 0) {
+            fromX = nodes.isEmpty() ? 0 : minX;
+            fromY = nodes.isEmpty() ? 0 : minY;
+            toX = nodes.isEmpty() ? 1 : maxX;
+            toY = nodes.isEmpty() ? 1 : maxY;
+        }
+        double scale = Math.min((width - 2.0 * padding) / Math.max(1, toX - fromX), (height - 2.0 * padding) / Math.max(1, toY - fromY));
+        return new Viewport(width, height, (fromX + toX) / 2, (fromY + toY) / 2, Math.max(scale, 1e-9));
+    }
+
+    // Renders the static layers (everything but the route) into a new image the size of the viewport
+    public BufferedImage renderStatic(Viewport view) {
+        BufferedImage image = new BufferedImage(Math.max(1, view.width), Math.max(1, view.height), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        try {
+            paintStatic(g2, view);
+        } finally {
+            g2.dispose();
+        }
+        return image;
+    }
+
+    // Background, then the heatmap or the dots, circles & labels of the visible nodes
+    public void paintStatic(Graphics2D g2, Viewport view) {
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setColor(Color.white);
+        g2.fillRect(0, 0, view.width, view.height);
+
+        double dotRadius = Math.max(1, DOT_SIZE * view.scale);
+        double circleRadius = transmission * view.scale;
+        Visible visible = collectVisible(view, Math.max(dotRadius, circleRadius) + 100);
+        int[] indices = visible.indices;
+        int visibleCount = visible.count;
+
+        if (useHeatmap(view, visibleCount)) {
+            paintHeatmap(g2, view, visible);
+            return;
+        }
+
+        // Dots; small ones as squares, which are much cheaper than antialiased ovals
+        g2.setColor(Color.black);
+        int diameter = (int) Math.round(2 * dotRadius);
+        for (int k = 0; k < visibleCount; k++) {
+            Node node = nodes.get(indices[k]);
+            int x = (int) Math.round(view.screenX(node.getX()) - dotRadius);
+            int y = (int) Math.round(view.screenY(node.getY()) - dotRadius);
+            if (diameter <= 3) {
+                g2.fillRect(x, y, diameter, diameter);
+            } else {
+                g2.fillOval(x, y, diameter, diameter);
+            }
+        }
+
+        // Transmission ranges
+        if (visibleCount <= CIRCLE_LIMIT && circleRadius >= MIN_CIRCLE_PIXELS) {
+            g2.setColor(new Color(0, 0, 255, 50)); // Transparent blue
+            int radius = (int) Math.round(circleRadius);
+            for (int k = 0; k < visibleCount; k++) {
+                Node node = nodes.get(indices[k]);
+                if (node.getId() == 0) continue;
+                int x = (int) Math.round(view.screenX(node.getX()));
+                int y = (int) Math.round(view.screenY(node.getY()));
+                g2.drawOval(x - radius, y - radius, 2 * radius, 2 * radius);
+            }
+        }
+
+        // Node IDs and packet counts
+        if (visibleCount <= LABEL_LIMIT) {
+            Font originalFont = g2.getFont();
+            FontMetrics metrics = g2.getFontMetrics();
+            g2.setFont(originalFont.deriveFont(originalFont.getSize() + 15f));
+            for (int k = 0; k < visibleCount; k++) {
+                Node node = nodes.get(indices[k]);
+                int x = (int) Math.round(view.screenX(node.getX()));
+                int y = (int) Math.round(view.screenY(node.getY()));
+                String nodeId = String.valueOf(node.getId());
+                int nodeIdWidth = metrics.stringWidth(nodeId);
+                g2.setColor(Color.red);
+                g2.drawString(nodeId, x - (nodeIdWidth / 2), y - 10);
+                g2.setColor(Color.darkGray);
+                g2.drawString("(" + node.getPackets() + ")", x + (nodeIdWidth / 2) + 16, y - 10);
+            }
+            g2.setFont(originalFont);
+        }
+    }
+
+    // The robot's route, drawn on top of the static layers
+    public void paintRoute(Graphics2D g2, Viewport view, List<Node> route) {
+        if (route == null || route.size() < 2) {
+            return;
+        }
+        int[] xs = new int[route.size()];
+        int[] ys = new int[route.size()];
+        for (int i = 0; i < route.size(); i++) {
+            xs[i] = (int) Math.round(view.screenX(route.get(i).getX()));
+            ys[i] = (int) Math.round(view.screenY(route.get(i).getY()));
+        }
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setColor(Color.blue);
+        g2.setStroke(new BasicStroke(2));
+        g2.drawPolyline(xs, ys, xs.length);
+    }
+
+    /*
+     * Marks the nodes whose IDs are set in covered (the nodes a route visits or
+     * covers) with green dots, over the static layers
+     */
+    public void paintCoverage(Graphics2D g2, Viewport view, BitSet covered) {
+        double dotRadius = Math.max(1.5, DOT_SIZE * view.scale);
+        Visible visible = collectVisible(view, dotRadius);
+        int diameter = (int) Math.round(2 * dotRadius);
+        g2.setColor(COVERED);
+        for (int k = 0; k < visible.count; k++) {
+            Node node = nodes.get(visible.indices[k]);
+            if (node.getId() > 0 && covered.get(node.getId())) {
+                int x = (int) Math.round(view.screenX(node.getX()) - dotRadius);
+                int y = (int) Math.round(view.screenY(node.getY()) - dotRadius);
+                if (diameter <= 3) {
+                    g2.fillRect(x, y, diameter, diameter);
+                } else {
+                    g2.fillOval(x, y, diameter, diameter);
+                }
+            }
+        }
+    }
+
+    /*
+     * The same layers as paintStatic, paintCoverage & paintRoute as an SVG document,
+     * with the same culling & level of detail. Where the bitmap would switch to
+     * the heatmap, only the covered nodes & the route are written, which keeps
+     * the file small
+     */
+    public void writeSvg(Appendable out, Viewport view, BitSet covered, List<Node> route) throws IOException {
+        double dotRadius = Math.max(1, DOT_SIZE * view.scale);
+        double circleRadius = transmission * view.scale;
+        Visible visible = collectVisible(view, Math.max(dotRadius, circleRadius) + 100);
+        boolean dense = useHeatmap(view, visible.count);
+        boolean circles = !dense && visible.count <= CIRCLE_LIMIT && circleRadius >= MIN_CIRCLE_PIXELS;
+        boolean labels = !dense && visible.count <= LABEL_LIMIT;
+
+        out.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(String.valueOf(view.width))
+           .append("\" height=\"").append(String.valueOf(view.height)).append("\">\n");
+        out.append("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n");
+        StringBuilder dots = new StringBuilder();
+        StringBuilder coveredDots = new StringBuilder();
+        StringBuilder rings = new StringBuilder();
+        StringBuilder text = new StringBuilder();
+        for (int k = 0; k < visible.count; k++) {
+            Node node = nodes.get(visible.indices[k]);
+            String x = svgNumber(view.screenX(node.getX()));
+            String y = svgNumber(view.screenY(node.getY()));
+            boolean isCovered = node.getId() > 0 && covered != null && covered.get(node.getId());
+            if (!dense || isCovered) {
+                (isCovered ? coveredDots : dots).append("<circle cx=\"").append(x).append("\" cy=\"").append(y)
+                    .append("\" r=\"").append(svgNumber(dotRadius)).append("\"/>\n");
+            }
+            if (circles && node.getId() != 0) {
+                rings.append("<circle cx=\"").append(x).append("\" cy=\"").append(y)
+                    .append("\" r=\"").append(svgNumber(circleRadius)).append("\"/>\n");
+            }
+            if (labels) {
+                text.append("<text x=\"").append(x).append("\" y=\"").append(svgNumber(view.screenY(node.getY()) - 10))
+                    .append("\"><tspan fill=\"red\">").append(node.getId()).append("</tspan> <tspan fill=\"dimgray\">(")
+                    .append(node.getPackets()).append(")</tspan></text>\n");
+            }
+        }
+        out.append("<g fill=\"black\">\n").append(dots).append("</g>\n");
+        out.append("<g fill=\"none\" stroke=\"blue\" stroke-opacity=\"0.2\">\n").append(rings).append("</g>\n");
+        out.append("<g font-family=\"sans-serif\" font-size=\"18\">\n").append(text).append("</g>\n");
+        out.append("<g fill=\"rgb(").append(String.valueOf(COVERED.getRed())).append(',').append(String.valueOf(COVERED.getGreen()))
+           .append(',').append(String.valueOf(COVERED.getBlue())).append(")\">\n").append(coveredDots).append("</g>\n");
+        if (route != null && route.size() > 1) {
+            out.append("<polyline fill=\"none\" stroke=\"blue\" stroke-width=\"2\" points=\"");
+            for (Node node : route) {
+                out.append(svgNumber(view.screenX(node.getX()))).append(',').append(svgNumber(view.screenY(node.getY()))).append(' ');
+            }
+            out.append("\"/>\n");
+        }
+        out.append("</svg>\n");
+    }
+
+    // Number of nodes the last paintStatic found in its viewport
+    public int getVisibleCount() {
+        return lastVisibleCount;
+    }
+
+    private static boolean useHeatmap(Viewport view, int visibleCount) {
+        return (long) visibleCount * PIXELS_PER_DOT > (long) view.width * view.height;
+    }
+
+    private static String svgNumber(double value) {
+        return String.valueOf(Math.round(value * 10) / 10.0);
+    }
+
+    // The nodes inside the viewport grown by margin pixels
+    private Visible collectVisible(Viewport view, double margin) {
+        double fromX = view.fieldX(-margin);
+        double toX = view.fieldX(view.width + margin);
+        double fromY = view.fieldY(view.height + margin);
+        double toY = view.fieldY(-margin);
+        Visible visible = new Visible();
+        grid.forEachInBox(fromX, fromY, toX, toY, i -> {
+            Node node = nodes.get(i);
+            if (node.getX() >= fromX && node.getX() <= toX && node.getY() >= fromY && node.getY() <= toY) {
+                if (visible.count == visible.indices.length) {
+                    visible.indices = Arrays.copyOf(visible.indices, visible.indices.length * 2);
+                }
+                visible.indices[visible.count++] = i;
+            }
+        });
+        lastVisibleCount = visible.count;
+        return visible;
+    }
+
+    /*
+     * Sums the packets of the visible nodes into HEAT_BIN x HEAT_BIN pixel bins and
+     * colours each bin on a log scale, from pale blue for a few packets to dark red
+     * for the densest bin
+     */
+    private void paintHeatmap(Graphics2D g2, Viewport view, Visible visible) {
+        int cols = (view.width + HEAT_BIN - 1) / HEAT_BIN;
+        int rows = (view.height + HEAT_BIN - 1) / HEAT_BIN;
+        long[] packets = new long[cols * rows];
+        long maxPackets = 0;
+        for (int k = 0; k < visible.count; k++) {
+            Node node = nodes.get(visible.indices[k]);
+            int col = (int) Math.floor(view.screenX(node.getX()) / HEAT_BIN);
+            int row = (int) Math.floor(view.screenY(node.getY()) / HEAT_BIN);
+            if (col < 0 || row < 0 || col >= cols || row >= rows) {
+                continue;
+            }
+            int bin = row * cols + col;
+            // Nodes without packets still count, so empty parts of the field stay distinguishable
+            packets[bin] += Math.max(1, node.getPackets());
+            maxPackets = Math.max(maxPackets, packets[bin]);
+        }
+
+        BufferedImage heat = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = new int[cols * rows];
+        double logMax = Math.log1p(maxPackets);
+        for (int bin = 0; bin < pixels.length; bin++) {
+            pixels[bin] = packets[bin] == 0 ? 0xFFFFFF : heatColor(Math.log1p(packets[bin]) / logMax);
+        }
+        heat.setRGB(0, 0, cols, rows, pixels, 0, cols);
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g2.drawImage(heat, 0, 0, cols * HEAT_BIN, rows * HEAT_BIN, null);
+    }
+
+    // 0 is pale blue, 0.5 yellow, 1 dark red
+    private static int heatColor(double t) {
+        double r, g, b;
+        if (t < 0.5) {
+            double u = t / 0.5;
+            r = 0.75 + 0.25 * u;
+            g = 0.85 + 0.10 * u;
+            b = 1.0 - 0.8 * u;
+        } else {
+            double u = (t - 0.5) / 0.5;
+            r = 1.0 - 0.45 * u;
+            g = 0.95 * (1 - u);
+            b = 0.2 * (1 - u);
+        }
+        return ((int) (r * 255) << 16) | ((int) (g * 255) << 8) | (int) (b * 255);
+    }
+}
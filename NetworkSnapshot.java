@@ -0,0 +1,203 @@
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/*
+ * An immutable copy of a loaded network for one transmission range: node
+ * coordinates, packets, CSR adjacency & initial prizes. A run drains packets
+ * and prizes on its Node objects, so those can't be shared between runs, but
+ * everything else can. Each run checks out a SimulationContext with acquire,
+ * which either reuses a released context (reset in O(n) from the initial
+ * packets & prizes) or materializes a new one from the arrays without parsing
+ * the file or rebuilding the graph. Concurrent runs each get their own context.
+ *
+ * Cache hands out one snapshot per file & range, so a sweep over many battery
+ * levels loads every network once. It keeps the most recently used snapshots
+ * only (-Dnetwork.cache.size, 32 by default); an evicted network is loaded
+ * again if it is asked for later.
+ */
+public class NetworkSnapshot {
+    private int transmissionRange;
+    private int[] ids;
+    private int[] xs;
+    private int[] ys;
+    private int[] packets;
+    private int[] initialPrizes;
+
+    // Shared read-only by the CSRGraph of every context made from this snapshot
+    private int[] offsets;
+    private int[] targets;
+    private float[] distances;
+
+    private SimulationMetrics loadTimes = new SimulationMetrics();
+    // The metrics of the earliest job that has the load times so far, see recordLoadTimes
+    private SimulationMetrics loadTimesHolder;
+    private int loadTimesJob = Integer.MAX_VALUE;
+    private ConcurrentLinkedQueue<SimulationContext> released = new ConcurrentLinkedQueue<>();
+
+    // Loads the network through InputNetwork (text or .lnet) and keeps its initial state
+    public static NetworkSnapshot load(String filename, int transmissionRange) throws IOException {
+        InputNetwork inputNetwork = new InputNetwork(filename, transmissionRange);
+        NetworkSnapshot snapshot = new NetworkSnapshot(inputNetwork, transmissionRange);
+        // The context just loaded is untouched, so it becomes the first one handed out
+        snapshot.release(inputNetwork.getContext());
+        return snapshot;
+    }
+
+    // The network must not have been run on yet, since its current packets & prizes are taken as the initial ones
+    public NetworkSnapshot(InputNetwork inputNetwork, int transmissionRange) {
+        this.transmissionRange = transmissionRange;
+        if (!(inputNetwork.getGraph() instanceof CSRGraph)) {
+            throw new IllegalArgumentException("A snapshot needs the CSR graph built with the spatial index");
+        }
+        List<Node> nodeList = inputNetwork.getNodeList();
+        int n = nodeList.size();
+        ids = new int[n];
+        xs = new int[n];
+        ys = new int[n];
+        packets = new int[n];
+        initialPrizes = new int[n];
+        for (int i = 0; i < n; i++) {
+            Node node = nodeList.get(i);
+            ids[i] = node.getId();
+            xs[i] = node.getX();
+            ys[i] = node.getY();
+            packets[i] = node.getPackets();
+            initialPrizes[i] = node.getPrize();
+        }
+        CSRGraph graph = (CSRGraph) inputNetwork.getGraph();
+        offsets = graph.getOffsets();
+        targets = graph.getTargets();
+        distances = graph.getDistances();
+        inputNetwork.recordLoadTimes(loadTimes);
+    }
+
+    /*
+     * Copies how long loading the network took into the metrics of the run with
+     * the lowest jobIndex on this snapshot, taking them back from a later job that
+     * asked first; every other run is left without load times. ParallelSweep hands
+     * a job over only once every earlier job is done, so by then this is settled
+     * and the same row gets the times whichever thread finishes first
+     */
+    public synchronized void recordLoadTimes(SimulationMetrics metrics, int jobIndex) {
+        if (metrics == null || jobIndex >= loadTimesJob) {
+            return;
+        }
+        if (loadTimesHolder != null) {
+            loadTimesHolder.clearLoadTimes();
+        }
+        metrics.setLoadTimes(loadTimes.getParseNanos(), loadTimes.getGraphBuildNanos(), loadTimes.getInitialPrizeNanos());
+        loadTimesHolder = metrics;
+        loadTimesJob = jobIndex;
+    }
+
+    public int getTransmissionRange() {
+        return transmissionRange;
+    }
+
+    public int getNumNodes() {
+        return ids.length;
+    }
+
+    // A context in its initial state that no other caller holds until it is released
+    public SimulationContext acquire() {
+        SimulationContext context = released.poll();
+        if (context == null) {
+            return materialize();
+        }
+        reset(context);
+        return context;
+    }
+
+    // Hands a context back for reuse once its run is finished
+    public void release(SimulationContext context) {
+        released.add(context);
+    }
+
+    // Builds fresh Node objects, wiring each node's network from its CSR row
+    public SimulationContext materialize() {
+        SimulationContext context = new SimulationContext();
+        for (int i = 0; i < ids.length; i++) {
+            context.addNode(new Node(ids[i], xs[i], ys[i], packets[i]));
+        }
+        context.setGraph(new CSRGraph(context, offsets, targets, distances));
+        for (int i = 0; i < ids.length; i++) {
+            Node node = context.getNode(ids[i]);
+            for (int k = offsets[ids[i] - 1]; k < offsets[ids[i]]; k++) {
+                node.addToNetwork(context.getNode(targets[k]));
+            }
+            node.setPrize(initialPrizes[i]);
+        }
+        return context;
+    }
+
+    // Puts back the packets & prizes a run drained; the nodes' networks never change
+    public void reset(SimulationContext context) {
+        List<Node> nodeList = context.getNodeList();
+        for (int i = 0; i < ids.length; i++) {
+            nodeList.get(i).reset(packets[i], initialPrizes[i]);
+        }
+    }
+
+    /*
+     * Loads each file & range once, even when several threads ask for it at the
+     * same time, and keeps the maxSnapshots most recently used. A load that
+     * failed isn't kept, so asking again retries it
+     */
+    public static class Cache {
+        private Map<String, FutureTask<NetworkSnapshot>> snapshots;
+
+        public Cache() {
+            this(Integer.getInteger("network.cache.size", 32));
+        }
+
+        public Cache(int maxSnapshots) {
+            int limit = Math.max(1, maxSnapshots);
+            snapshots = new LinkedHashMap<String, FutureTask<NetworkSnapshot>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, FutureTask<NetworkSnapshot>> eldest) {
+                    return size() > limit;
+                }
+            };
+        }
+
+        public NetworkSnapshot get(String filename, int transmissionRange) throws IOException {
+            String key = filename + "@" + transmissionRange;
+            FutureTask<NetworkSnapshot> task;
+            boolean load = false;
+            synchronized (snapshots) {
+                task = snapshots.get(key);
+                if (task == null) {
+                    task = new FutureTask<>(() -> load(filename, transmissionRange));
+                    snapshots.put(key, task);
+                    load = true;
+                }
+            }
+            // Loaded outside the lock, so other networks load at the same time
+            if (load) {
+                task.run();
+            }
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading " + filename, e);
+            } catch (ExecutionException e) {
+                synchronized (snapshots) {
+                    snapshots.remove(key, task);
+                }
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IOException("Failed to load " + filename, e.getCause());
+            }
+        }
+    }
+}
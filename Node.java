@@ -1,8 +1,6 @@
 import java.util.Random;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class Node {
     private int x; 
@@ -11,8 +9,6 @@ public class Node {
     private int numPackets; 
     private int minPackets; 
     private int maxPackets;     
-    private static Map<Integer, Node> nodeRegistry= new HashMap<>(); 
-    private static Random rand = new Random();  
     private int prize; 
     private List<Node> network = new ArrayList<>(); 
     private double PCR = 0.0; // Prize/Cost Ratio 
@@ -23,13 +19,12 @@ public class Node {
         this.x = 0; 
         this.y = 0; 
     }
-    // Constructor used by automatedSetup, where nodes are randomly placed and assigned packets
-    public Node(int id, int maxWidth, int maxLength, int minPackets, int maxPackets) {
+    // Constructor used by automatedSetup, where nodes are randomly placed and assigned packets using the simulation's generator
+    public Node(int id, int maxWidth, int maxLength, int minPackets, int maxPackets, Random rand) {
         this.id = id;
         this.x = rand.nextInt(maxWidth + 1);  // random number from 0 to maxWidth-1
         this.y = rand.nextInt(maxLength + 1); // random number from 0 to maxLength-1
         this.numPackets = rand.nextInt(maxPackets - minPackets +1) + minPackets; 
-        registerNode(this);
     }
 
     // Constructor used by inputNetwork, where placement and packets are predefined 
@@ -38,16 +33,21 @@ public class Node {
         this.x = x; 
         this.y = y; 
         this.numPackets = packets; 
-        registerNode(this);
     }
     
-    //This method takes the network of a node (visited by robot) and drains the network of packets 
-    public void drainNetwork(){
-        this.drainPackets();
+    /*
+     * This method takes the network of a node (visited by robot) and drains the network of packets. 
+     * Prizes are kept up to date as packets are drained (see drainPackets), so only the visited 
+     * node's two-hop neighborhood is touched instead of rescanning the whole graph. 
+     * Returns the number of prizes that were decreased 
+     */
+    public int drainNetwork(){
+        int updates = this.drainPackets();
         for(Node node : this.network){
-            node.drainPackets();
+            updates += node.drainPackets();
         }
         this.prize = 0;
+        return updates;
     }
 
     // Getter methods 
@@ -81,15 +81,11 @@ public class Node {
     }
 
     public double getDistance(Node other) {
-        int dx = this.x - other.x;
-        int dy = this.y - other.y;
+        long dx = (long) this.x - other.x;
+        long dy = (long) this.y - other.y;
         return Math.sqrt(dx*dx + dy*dy);  
     }
 
-    public static Node getNodeById(int id){ 
-        return nodeRegistry.get(id);
-    }
-
     // Setter Methods 
     public void setPCR(double PCR){ 
         this.PCR = PCR; 
@@ -99,12 +95,30 @@ public class Node {
         this.prize = prize;
     }
 
-    public void drainPackets() {
+    /*
+     * Coverage is symmetric, so the nodes whose prize includes this node's packets are 
+     * exactly this node and its network. When the packets are drained, that amount is 
+     * subtracted from each of those prizes rather than recalculating them from scratch. 
+     * Returns the number of prizes that were decreased 
+     */
+    public int drainPackets() {
+        if (numPackets == 0) {
+            return 0;
+        }
+        int drained = numPackets;
         numPackets = 0; 
+        prize -= drained;
+        for (Node coveringNode : network) {
+            coveringNode.prize -= drained;
+        }
+        return 1 + network.size();
     }
 
-    public static void registerNode(Node node){
-        nodeRegistry.put(node.getId(), node);
+    // Restores the packets & prize of a node before another run on the same network 
+    public void reset(int packets, int prize){
+        this.numPackets = packets;
+        this.prize = prize;
+        this.PCR = 0.0;
     }
 
     public void addToNetwork(Node neighbor){
@@ -0,0 +1,91 @@
+import java.util.List;
+
+/*
+ * The coordinates of a list of nodes, and each node's energy back to the depot,
+ * kept as plain arrays (structure of arrays) instead of behind Node getters.
+ * The per-step scans of FeasibilityTracker & PCRSelector run over these arrays
+ * in simple counted loops with no calls or branches in them, which HotSpot's
+ * C2 compiler turns into SIMD code (SSE/AVX on x86, NEON on ARM).
+ *
+ * The results are exactly those of Robot.distanceFromRobot & Robot.canReach.
+ * Coordinates are whole numbers, so while every coordinate is below 2^25 in
+ * size each squared distance is below 2^53 and the sum is exact in a double.
+ * Outside that range the kernels fall back to the long arithmetic Robot uses.
+ *
+ * Owners that drop nodes as they go keep the arrays compacted with move(), so
+ * a slot k always lines up with the owner's own k-th node.
+ */
+public class NodeArrays {
+    // Coordinates are exact in double arithmetic strictly below this size
+    private static final double EXACT_LIMIT = 1 << 25;
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] depotEnergy;
+    private final boolean exact;
+
+    public NodeArrays(List<Node> nodes) {
+        int n = nodes.size();
+        x = new double[n];
+        y = new double[n];
+        depotEnergy = new double[n];
+        boolean small = true;
+        for (int k = 0; k < n; k++) {
+            Node node = nodes.get(k);
+            x[k] = node.getX();
+            y[k] = node.getY();
+            // Same expression as Robot.canReach
+            depotEnergy[k] = Math.sqrt((long) node.getX()*node.getX() + (long) node.getY() * node.getY())/36;
+            small &= Math.abs(x[k]) < EXACT_LIMIT && Math.abs(y[k]) < EXACT_LIMIT;
+        }
+        exact = small;
+    }
+
+    public int size() {
+        return x.length;
+    }
+
+    public double getDepotEnergy(int k) {
+        return depotEnergy[k];
+    }
+
+    // Copies slot from into slot to, for owners compacting their live nodes
+    public void move(int from, int to) {
+        x[to] = x[from];
+        y[to] = y[from];
+        depotEnergy[to] = depotEnergy[from];
+    }
+
+    // distance[k] = distance from (robotX, robotY) to the node in slot k, for from <= k < to
+    public void distances(int robotX, int robotY, int from, int to, double[] distance) {
+        if (exact && Math.abs((double) robotX) < EXACT_LIMIT && Math.abs((double) robotY) < EXACT_LIMIT) {
+            double rx = robotX;
+            double ry = robotY;
+            for (int k = from; k < to; k++) {
+                double dx = rx - x[k];
+                double dy = ry - y[k];
+                distance[k] = Math.sqrt(dx*dx + dy*dy);
+            }
+        } else {
+            for (int k = from; k < to; k++) {
+                long dx = (long) robotX - (long) x[k];
+                long dy = (long) robotY - (long) y[k];
+                distance[k] = Math.sqrt(dx*dx + dy*dy);
+            }
+        }
+    }
+
+    // reachable[k] = whether battery covers the trip to slot k & back to the depot, as in Robot.canReach
+    public void reachable(double battery, double[] distance, int from, int to, boolean[] reachable) {
+        for (int k = from; k < to; k++) {
+            reachable[k] = battery > depotEnergy[k] + distance[k]/36;
+        }
+    }
+
+    // ratio[k] = prize[k] / distance[k], the PCR of slot k
+    public static void ratios(int[] prize, double[] distance, int from, int to, double[] ratio) {
+        for (int k = from; k < to; k++) {
+            ratio[k] = prize[k] / distance[k];
+        }
+    }
+}
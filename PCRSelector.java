@@ -0,0 +1,224 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * This class picks the robot's next node lazily instead of scoring every
+ * feasible node each step. The nodes are bucketed into a spatial grid and
+ * every cell keeps an optimistic bound on its best prize/cost ratio: the
+ * largest prize in the cell divided by the shortest possible distance from
+ * the robot to the cell. Cells are pulled off a max-heap by that bound and
+ * only scored when they reach the top, and the search stops as soon as the
+ * best score found beats the bound of every cell left in the heap.
+ *
+ * Prizes only ever go down, so a cell's stored max prize may be stale but it
+ * is never too small. It is refreshed whenever the cell is actually scored,
+ * which is also when drained & visited nodes (prize 0) are dropped for good.
+ *
+ * A cell's live members sit next to each other in a NodeArrays store, so the
+ * distances, feasibility & PCRs of a whole cell are worked out by NodeArrays'
+ * vectorizable loops before the members are compared one by one.
+ *
+ * Ties are broken by position in the original node list, the same way the
+ * full scan in Robot.findBestPCR keeps the first node with the highest PCR,
+ * so the chosen route is identical.
+ */
+public class PCRSelector {
+    // Aim for a handful of nodes per cell so bounds are tight without too many cells
+    private static final int NODES_PER_CELL = 8;
+
+    private List<Node> nodes;
+    private int[] members;
+    // Slot k of arrays holds the coordinates of node members[k]; the scratch arrays line up the same way
+    private NodeArrays arrays;
+    private int[] prize;
+    private double[] distance;
+    private boolean[] reachable;
+    private double[] ratio;
+    private int[] cellBegin;
+    private int[] cellLive;
+    private int[] cellMaxPrize;
+    private long[] cellMinX;
+    private long[] cellMaxX;
+    private long[] cellMinY;
+    private long[] cellMaxY;
+    private double[] cellMinDepotEnergy;
+    private int[] activeCells;
+    private int activeCount;
+
+    // Max-heap of cell ids ordered by bound[]
+    private int[] heap;
+    private int heapSize;
+    private double[] bound;
+
+    // Number of nodes given the full feasibility test so far
+    private long checks;
+
+    public PCRSelector(List<Node> candidates) {
+        this.nodes = new ArrayList<>(candidates);
+        int n = nodes.size();
+
+        long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+        for (Node node : nodes) {
+            minX = Math.min(minX, node.getX());
+            minY = Math.min(minY, node.getY());
+            maxX = Math.max(maxX, node.getX());
+            maxY = Math.max(maxY, node.getY());
+        }
+        int cellSize = 1;
+        if (n > 0) {
+            double area = (double) (maxX - minX + 1) * (maxY - minY + 1);
+            cellSize = (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.sqrt(area * NODES_PER_CELL / n)));
+        }
+        SpatialGrid grid = new SpatialGrid(nodes, cellSize);
+
+        int cells = grid.getCellCount();
+        members = new int[n];
+        List<Node> gridOrder = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            gridOrder.add(nodes.get(grid.getCellNode(k)));
+        }
+        arrays = new NodeArrays(gridOrder);
+        prize = new int[n];
+        distance = new double[n];
+        reachable = new boolean[n];
+        ratio = new double[n];
+        cellBegin = new int[cells];
+        cellLive = new int[cells];
+        cellMaxPrize = new int[cells];
+        cellMinX = new long[cells];
+        cellMaxX = new long[cells];
+        cellMinY = new long[cells];
+        cellMaxY = new long[cells];
+        cellMinDepotEnergy = new double[cells];
+        activeCells = new int[cells];
+        heap = new int[cells];
+        bound = new double[cells];
+
+        for (int c = 0; c < cells; c++) {
+            cellBegin[c] = grid.getCellStart(c);
+            cellMinX[c] = Long.MAX_VALUE;
+            cellMinY[c] = Long.MAX_VALUE;
+            cellMaxX[c] = Long.MIN_VALUE;
+            cellMaxY[c] = Long.MIN_VALUE;
+            cellMinDepotEnergy[c] = Double.POSITIVE_INFINITY;
+            for (int k = grid.getCellStart(c); k < grid.getCellEnd(c); k++) {
+                int i = grid.getCellNode(k);
+                Node node = nodes.get(i);
+                if (node.getPrize() == 0) {
+                    continue;
+                }
+                arrays.move(k, cellBegin[c] + cellLive[c]);
+                members[cellBegin[c] + cellLive[c]++] = i;
+                cellMaxPrize[c] = Math.max(cellMaxPrize[c], node.getPrize());
+                cellMinX[c] = Math.min(cellMinX[c], node.getX());
+                cellMaxX[c] = Math.max(cellMaxX[c], node.getX());
+                cellMinY[c] = Math.min(cellMinY[c], node.getY());
+                cellMaxY[c] = Math.max(cellMaxY[c], node.getY());
+                // Same value as Robot.canReach uses, so this is never larger than a member's own
+                cellMinDepotEnergy[c] = Math.min(cellMinDepotEnergy[c], arrays.getDepotEnergy(k));
+            }
+            if (cellLive[c] > 0) {
+                activeCells[activeCount++] = c;
+            }
+        }
+    }
+
+    /*
+     * Returns the feasible node with the greatest PCR for the robot's current
+     * position and battery, or null if no node is feasible. Every node that gets
+     * scored has its PCR set, just like findBestPCR does for the feasible list.
+     */
+    public Node select(Robot robot) {
+        long robotX = robot.getX();
+        long robotY = robot.getY();
+        double battery = robot.getBattery();
+
+        heapSize = 0;
+        for (int a = 0; a < activeCount; a++) {
+            int c = activeCells[a];
+            if (cellMaxPrize[c] == 0) {
+                // Every node in the cell has been drained, so it never needs to be looked at again
+                activeCells[a--] = activeCells[--activeCount];
+                continue;
+            }
+            long dx = Math.max(0, Math.max(cellMinX[c] - robotX, robotX - cellMaxX[c]));
+            long dy = Math.max(0, Math.max(cellMinY[c] - robotY, robotY - cellMaxY[c]));
+            double minDistance = Math.sqrt(dx*dx + dy*dy);
+            if (battery <= cellMinDepotEnergy[c] + minDistance/36) {
+                continue;
+            }
+            bound[c] = cellMaxPrize[c] / minDistance;
+            heap[heapSize++] = c;
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+
+        Node bestNode = null;
+        int bestIndex = -1;
+        double bestPCR = Double.NEGATIVE_INFINITY;
+        while (heapSize > 0 && bound[heap[0]] >= bestPCR) {
+            int c = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(0);
+
+            // Drained nodes are dropped first, then the rest of the cell is scored in bulk
+            int begin = cellBegin[c];
+            int end = begin;
+            int maxPrize = 0;
+            for (int k = begin; k < begin + cellLive[c]; k++) {
+                int i = members[k];
+                int nodePrize = nodes.get(i).getPrize();
+                if (nodePrize == 0) {
+                    continue;
+                }
+                members[end] = i;
+                arrays.move(k, end);
+                prize[end++] = nodePrize;
+                maxPrize = Math.max(maxPrize, nodePrize);
+            }
+            checks += end - begin;
+            arrays.distances(robot.getX(), robot.getY(), begin, end, distance);
+            arrays.reachable(battery, distance, begin, end, reachable);
+            NodeArrays.ratios(prize, distance, begin, end, ratio);
+
+            for (int k = begin; k < end; k++) {
+                if (!reachable[k]) {
+                    continue;
+                }
+                int i = members[k];
+                double PCR = ratio[k];
+                nodes.get(i).setPCR(PCR);
+                if (PCR > bestPCR || (PCR == bestPCR && i < bestIndex)) {
+                    bestPCR = PCR;
+                    bestIndex = i;
+                    bestNode = nodes.get(i);
+                }
+            }
+            int live = end - begin;
+            cellLive[c] = live;
+            cellMaxPrize[c] = maxPrize;
+        }
+        return bestNode;
+    }
+
+    public long getChecks() {
+        return checks;
+    }
+
+    private void siftDown(int i) {
+        int cell = heap[i];
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && bound[heap[child + 1]] > bound[heap[child]]) {
+                child++;
+            }
+            if (bound[heap[child]] <= bound[cell]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = cell;
+    }
+}
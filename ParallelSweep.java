@@ -0,0 +1,142 @@
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class runs independent simulations (every battery level x network
+ * combination of a sweep) on a pool of worker threads. Each job loads its own
+ * network into its own SimulationContext, so the runs share no state.
+ *
+ * Finished jobs are handed to the ResultHandler strictly in job order and one
+ * at a time, no matter which worker finishes first, so a DataExporter fed from
+ * the handler sees exactly the sequence a single-threaded sweep would produce.
+ *
+ * A job that throws anything, even an Error, is reported to onError, so the
+ * jobs after it are still handed over. If the handler itself throws, the
+ * remaining jobs are still handed over and the first such failure is thrown
+ * from run once the sweep is over.
+ */
+public class ParallelSweep {
+
+    // One simulation run of the sweep
+    public interface Job {
+        DataExporter.SimulationResult run() throws Exception;
+    }
+
+    // Receives the outcome of each job, in job order, never from two threads at once
+    public interface ResultHandler {
+        void onResult(int jobIndex, DataExporter.SimulationResult result);
+        void onError(int jobIndex, Exception error);
+    }
+
+    private int parallelism;
+
+    public ParallelSweep() {
+        this(configuredParallelism());
+    }
+
+    public ParallelSweep(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    // Number of worker threads, set with -Dsweep.parallelism=N (defaults to every core)
+    public static int configuredParallelism() {
+        return Integer.getInteger("sweep.parallelism", Runtime.getRuntime().availableProcessors());
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void run(List<Job> jobs, ResultHandler handler) throws InterruptedException {
+        OrderedCollector collector = new OrderedCollector(jobs.size(), handler);
+        if (parallelism == 1) {
+            for (int i = 0; i < jobs.size(); i++) {
+                runJob(jobs.get(i), i, collector);
+            }
+            collector.rethrowHandlerFailure();
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, jobs.size())));
+        try {
+            for (int i = 0; i < jobs.size(); i++) {
+                final int jobIndex = i;
+                pool.execute(() -> runJob(jobs.get(jobIndex), jobIndex, collector));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        collector.rethrowHandlerFailure();
+    }
+
+    private static void runJob(Job job, int jobIndex, OrderedCollector collector) {
+        DataExporter.SimulationResult result;
+        try {
+            result = job.run();
+        } catch (Exception e) {
+            collector.complete(jobIndex, null, e);
+            return;
+        } catch (Throwable t) {
+            // Errors (out of memory, stack overflow, assertions) still fill the job's slot
+            collector.complete(jobIndex, null, new ExecutionException(t));
+            return;
+        }
+        collector.complete(jobIndex, result, null);
+    }
+
+    /*
+     * Holds results that finished early until every job before them is done,
+     * then releases the longest finished prefix to the handler
+     */
+    private static class OrderedCollector {
+        private DataExporter.SimulationResult[] results;
+        private Exception[] errors;
+        private boolean[] done;
+        private int next = 0;
+        private ResultHandler handler;
+        private Throwable handlerFailure;
+
+        OrderedCollector(int numJobs, ResultHandler handler) {
+            this.results = new DataExporter.SimulationResult[numJobs];
+            this.errors = new Exception[numJobs];
+            this.done = new boolean[numJobs];
+            this.handler = handler;
+        }
+
+        synchronized void complete(int jobIndex, DataExporter.SimulationResult result, Exception error) {
+            results[jobIndex] = result;
+            errors[jobIndex] = error;
+            done[jobIndex] = true;
+            while (next < done.length && done[next]) {
+                try {
+                    if (errors[next] != null) {
+                        handler.onError(next, errors[next]);
+                    } else {
+                        handler.onResult(next, results[next]);
+                    }
+                } catch (Throwable t) {
+                    // Kept for run to throw, so the jobs after this one are still handed over
+                    if (handlerFailure == null) {
+                        handlerFailure = t;
+                    }
+                }
+                results[next] = null;
+                errors[next] = null;
+                next++;
+            }
+        }
+
+        synchronized void rethrowHandlerFailure() {
+            if (handlerFailure instanceof RuntimeException) {
+                throw (RuntimeException) handlerFailure;
+            }
+            if (handlerFailure instanceof Error) {
+                throw (Error) handlerFailure;
+            }
+        }
+    }
+}
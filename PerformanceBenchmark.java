@@ -0,0 +1,188 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark harness for the simulation's hot paths: reading a network file,
+ * building the graph, and the per-step work of the greedy loop
+ * (setFeasibleNodes, findBestPCR, moveRobotToNode with its incremental prize
+ * update, and the lazy selectNextNode). Every combination of node count,
+ * transmission range and battery is run for a few warmup iterations, so the
+ * JIT has compiled the hot loops, and then for the measured iterations.
+ * The median of the measured iterations is reported.
+ *
+ * Networks are generated with a fixed seed in a field that grows with the
+ * node count, keeping the density of the bundled 20-node files (1000 x 1000).
+ *
+ * Usage: java PerformanceBenchmark [--nodes 20,1000,100000] [--ranges 100,200]
+ *        [--batteries 50,200] [--warmup 2] [--iterations 5] [--seed 1] [--csv file]
+ */
+public class PerformanceBenchmark {
+    private static final String[] COLUMNS = {
+        "Nodes", "Range", "Battery", "Steps", "Parse ms", "Graph ms",
+        "setFeasibleNodes ns/step", "findBestPCR ns/step", "moveRobotToNode ns/step", "selectNextNode ns/step"
+    };
+
+    // Keeps the benchmarked results alive so the JIT can't discard the work
+    private static long sink;
+
+    // The value following the option at args[i]
+    private static String optionValue(String[] args, int i) {
+        if (i + 1 >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i]);
+        }
+        return args[i + 1];
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] nodeCounts = {20, 1000, 10000, 100000};
+        int[] ranges = {100};
+        double[] batteries = {50, 200};
+        int warmup = 2;
+        int iterations = 5;
+        long seed = 1;
+        String csvFile = null;
+
+        for (int i = 0; i < args.length; i += 2) {
+            switch (args[i]) {
+                case "--nodes": nodeCounts = Arrays.stream(optionValue(args, i).split(",")).mapToInt(Integer::parseInt).toArray(); break;
+                case "--ranges": ranges = Arrays.stream(optionValue(args, i).split(",")).mapToInt(Integer::parseInt).toArray(); break;
+                case "--batteries": batteries = Arrays.stream(optionValue(args, i).split(",")).mapToDouble(Double::parseDouble).toArray(); break;
+                case "--warmup": warmup = Integer.parseInt(optionValue(args, i)); break;
+                case "--iterations": iterations = Integer.parseInt(optionValue(args, i)); break;
+                case "--seed": seed = Long.parseLong(optionValue(args, i)); break;
+                case "--csv": csvFile = optionValue(args, i); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        List<double[]> rows = new ArrayList<>();
+        System.out.println(String.join(" | ", COLUMNS));
+        for (int numNodes : nodeCounts) {
+            Path networkFile = writeNetwork(numNodes, seed);
+            try {
+                for (int range : ranges) {
+                    for (double battery : batteries) {
+                        double[] row = benchmark(networkFile.toString(), numNodes, range, battery, warmup, iterations);
+                        rows.add(row);
+                        System.out.println(String.format("%d | %d | %.0f | %.0f | %.3f | %.3f | %.0f | %.0f | %.0f | %.0f",
+                            numNodes, range, battery, row[3], row[4], row[5], row[6], row[7], row[8], row[9]));
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(networkFile);
+            }
+        }
+
+        if (csvFile != null) {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(csvFile))) {
+                writer.println(String.join(",", COLUMNS));
+                for (double[] row : rows) {
+                    writer.println(String.format("%.0f,%.0f,%.0f,%.0f,%.3f,%.3f,%.0f,%.0f,%.0f,%.0f",
+                        row[0], row[1], row[2], row[3], row[4], row[5], row[6], row[7], row[8], row[9]));
+                }
+            }
+            System.out.println("Results exported to " + csvFile);
+        }
+    }
+
+    /*
+     * Runs one parameter combination and returns the median of each column. A run
+     * drains the network, so every iteration loads it again: once for the scanning
+     * loop and once for the lazy loop
+     */
+    private static double[] benchmark(String file, int numNodes, int range, double battery, int warmup, int iterations) throws IOException {
+        double[][] samples = new double[iterations][];
+        for (int iteration = -warmup; iteration < iterations; iteration++) {
+            double[] sample = new double[COLUMNS.length];
+            sample[0] = numNodes;
+            sample[1] = range;
+            sample[2] = battery;
+
+            // Scanning loop: setFeasibleNodes + findBestPCR + moveRobotToNode
+            InputNetwork inputNetwork = new InputNetwork(file, range);
+            sample[4] = inputNetwork.getParseTime();
+            sample[5] = inputNetwork.getGraphBuildTime() + inputNetwork.getInitialPrizeTime();
+            Robot robot = new Robot(inputNetwork.getContext(), battery);
+            long feasibleNanos = 0;
+            long bestPCRNanos = 0;
+            long moveNanos = 0;
+            int steps = 0;
+
+            long start = System.nanoTime();
+            robot.setFeasibleNodes();
+            feasibleNanos += System.nanoTime() - start;
+            while (!robot.getFeasibleNodes().isEmpty()) {
+                start = System.nanoTime();
+                robot.findBestPCR();
+                bestPCRNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                robot.moveRobotToNode(robot.getGreatestNode());
+                moveNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                robot.setFeasibleNodes();
+                feasibleNanos += System.nanoTime() - start;
+                steps++;
+            }
+            sink += robot.getTotalPackets();
+
+            // Lazy loop: selectNextNode + moveRobotToNode
+            robot = new Robot(new InputNetwork(file, range).getContext(), battery);
+            long selectNanos = 0;
+            int lazySteps = 0;
+            while (true) {
+                start = System.nanoTime();
+                Node next = robot.selectNextNode();
+                selectNanos += System.nanoTime() - start;
+                if (next == null) {
+                    break;
+                }
+                robot.moveRobotToNode(next);
+                lazySteps++;
+            }
+            sink += robot.getTotalPackets();
+
+            int perStep = Math.max(steps, 1);
+            sample[3] = steps;
+            sample[6] = (double) feasibleNanos / (steps + 1);
+            sample[7] = (double) bestPCRNanos / perStep;
+            sample[8] = (double) moveNanos / perStep;
+            sample[9] = (double) selectNanos / (lazySteps + 1);
+            if (iteration >= 0) {
+                samples[iteration] = sample;
+            }
+        }
+
+        double[] median = new double[COLUMNS.length];
+        double[] column = new double[iterations];
+        for (int c = 0; c < COLUMNS.length; c++) {
+            for (int i = 0; i < iterations; i++) {
+                column[i] = samples[i][c];
+            }
+            Arrays.sort(column);
+            median[c] = column[iterations / 2];
+        }
+        return median;
+    }
+
+    // Writes a random network in the Networks/N*.txt layout to a temporary file
+    private static Path writeNetwork(int numNodes, long seed) throws IOException {
+        Random rand = new Random(seed);
+        int side = (int) Math.ceil(Math.sqrt(numNodes / 20.0) * 1000);
+        Path file = Files.createTempFile("benchmark-" + numNodes + "-", ".txt");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file))) {
+            for (int id = 1; id <= numNodes; id++) {
+                writer.println(id + " " + rand.nextInt(side + 1) + " " + rand.nextInt(side + 1) + " " + rand.nextInt(101));
+            }
+        }
+        return file;
+    }
+}
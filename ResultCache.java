@@ -0,0 +1,281 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * A result cache on disk, so a run that was done before (same network contents,
+ * transmission range, battery & algorithm) is read back instead of run again.
+ *
+ * Every entry is one file named after the SHA-256 of the network file's bytes,
+ * the parameters and ALGORITHM_VERSION, holding the result's packets, distance,
+ * time, metrics and the route's node IDs. Renaming or copying a network keeps
+ * its entries, editing it doesn't. Entries are written to a temporary file and
+ * renamed into place, so several sweeps can share a cache directory. The cache
+ * is best effort: an entry that can't be written only costs a rerun later.
+ *
+ * The directory is kept under a size limit by evicting the least recently used
+ * entries; a hit touches the entry's modification time.
+ *
+ * Turn it on with -Dresult.cache=DIR; -Dresult.cache.mb sets the limit (256 MB
+ * by default).
+ */
+public class ResultCache {
+    // Bump whenever a change to the greedy, the PCR selection or RouteImprover can change a route
+    public static final int ALGORITHM_VERSION = 1;
+
+    private static final int MAGIC = 0x4C524331; // "LRC1"
+    private static final String SUFFIX = ".result";
+    private static final long DEFAULT_MAX_MB = 256;
+
+    // Network digests by path, size & modification time, so each file is hashed once per process
+    private static final ConcurrentHashMap<String, byte[]> networkDigests = new ConcurrentHashMap<>();
+
+    private Path directory;
+    private long maxBytes;
+    private AtomicLong totalBytes = new AtomicLong();
+    private AtomicInteger hits = new AtomicInteger();
+    private AtomicInteger misses = new AtomicInteger();
+    private AtomicBoolean warned = new AtomicBoolean();
+
+    public ResultCache(String directory, long maxBytes) throws IOException {
+        this.directory = Paths.get(directory);
+        this.maxBytes = maxBytes;
+        Files.createDirectories(this.directory);
+        for (Path entry : entries()) {
+            totalBytes.addAndGet(Files.size(entry));
+        }
+    }
+
+    // The cache asked for with -Dresult.cache, or null if it isn't set
+    public static ResultCache configured() throws IOException {
+        String directory = System.getProperty("result.cache");
+        if (directory == null || directory.trim().isEmpty()) {
+            return null;
+        }
+        return new ResultCache(directory.trim(), Long.getLong("result.cache.mb", DEFAULT_MAX_MB) * 1024 * 1024);
+    }
+
+    // Name of the greedy algorithm as configured for this JVM, including the RouteImprover budget when it runs
+    public static String greedyAlgorithm() {
+        return RouteImprover.configuredBudget() > 0 ? "greedy+improve:" + RouteImprover.configuredBudget() : "greedy";
+    }
+
+    // Key of a run of the algorithm on the network file, as 64 hex digits
+    public String key(String networkFile, int transmissionRange, double battery, String algorithm) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(networkDigest(networkFile));
+        String parameters = "range=" + transmissionRange + ";battery=" + Double.doubleToLongBits(battery) +
+            ";algorithm=" + algorithm + ";version=" + ALGORITHM_VERSION;
+        digest.update(parameters.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /*
+     * The cached result for the key, named networkName, or null if there is none.
+     * The route's node IDs are added to route when it isn't null
+     */
+    public DataExporter.SimulationResult get(String key, String networkName, double battery, List<Integer> route) {
+        Path entry = directory.resolve(key + SUFFIX);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(entry);
+        } catch (IOException e) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a cache entry");
+            }
+            int dataPackets = in.readInt();
+            double distance = in.readDouble();
+            long computationalTime = in.readLong();
+            long[] metrics = new long[in.readInt()];
+            for (int i = 0; i < metrics.length; i++) {
+                metrics[i] = in.readLong();
+            }
+            if (metrics.length > 0) {
+                // A hit loads no network, so the stored run's load times don't apply
+                metrics[0] = metrics[1] = metrics[2] = -1;
+            }
+            int[] routeIds = new int[in.readInt()];
+            for (int i = 0; i < routeIds.length; i++) {
+                routeIds[i] = in.readInt();
+            }
+            if (route != null) {
+                for (int id : routeIds) {
+                    route.add(id);
+                }
+            }
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return new DataExporter.SimulationResult(networkName, dataPackets, distance, computationalTime, battery)
+                .setMetrics(metrics.length > 0 ? SimulationMetrics.fromArray(metrics) : null);
+        } catch (IOException | RuntimeException e) {
+            // A damaged or foreign entry is a miss, and is replaced by the next put
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /*
+     * Stores a result & its route under the key, then evicts old entries if the
+     * cache is over its limit. A failure to write is reported once and otherwise
+     * ignored, so it never costs the caller its result
+     */
+    public void put(String key, DataExporter.SimulationResult result, List<Integer> route) {
+        try {
+            write(key, result, route);
+        } catch (IOException e) {
+            if (warned.compareAndSet(false, true)) {
+                System.out.println("Warning: could not write to the result cache " + directory + ": " + e +
+                    " (runs are not cached; further failures are not reported)");
+            }
+        }
+    }
+
+    private void write(String key, DataExporter.SimulationResult result, List<Integer> route) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 4 * route.size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(result.getDataPackets());
+            out.writeDouble(result.getDistanceTraveled());
+            out.writeLong(result.getComputationalTime());
+            long[] metrics = result.getMetrics() != null ? result.getMetrics().toArray() : new long[0];
+            out.writeInt(metrics.length);
+            for (long value : metrics) {
+                out.writeLong(value);
+            }
+            out.writeInt(route.size());
+            for (int id : route) {
+                out.writeInt(id);
+            }
+        }
+
+        Path entry = directory.resolve(key + SUFFIX);
+        Path temporary = Files.createTempFile(directory, key, ".tmp");
+        try {
+            Files.write(temporary, bytes.toByteArray());
+            long replaced = Files.exists(entry) ? Files.size(entry) : 0;
+            Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            totalBytes.addAndGet(bytes.size() - replaced);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        if (totalBytes.get() > maxBytes) {
+            evict();
+        }
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    // Deletes the least recently used entries until the cache is back under 90% of its limit
+    private synchronized void evict() throws IOException {
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+        List<Path> entries = entries();
+        long[] used = new long[entries.size()];
+        long[] sizes = new long[entries.size()];
+        long total = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            try {
+                used[i] = Files.getLastModifiedTime(entries.get(i)).toMillis();
+                sizes[i] = Files.size(entries.get(i));
+            } catch (NoSuchFileException e) {
+                // Evicted by another process sharing the directory
+            }
+            total += sizes[i];
+        }
+        Integer[] order = new Integer[entries.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> used[i]));
+        for (int i = 0; i < order.length && total > maxBytes * 9 / 10; i++) {
+            Files.deleteIfExists(entries.get(order[i]));
+            total -= sizes[order[i]];
+        }
+        totalBytes.set(total);
+    }
+
+    private List<Path> entries() {
+        List<Path> entries = new ArrayList<>();
+        File[] files = directory.toFile().listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                entries.add(file.toPath());
+            }
+        }
+        return entries;
+    }
+
+    // SHA-256 of the file's bytes, read through a direct buffer
+    private static byte[] networkDigest(String networkFile) throws IOException {
+        Path path = Paths.get(networkFile);
+        String id;
+        try {
+            id = path.toAbsolutePath() + "|" + Files.size(path) + "|" + Files.getLastModifiedTime(path).toMillis();
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(networkFile);
+        }
+        byte[] cached = networkDigests.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        byte[] result = digest.digest();
+        networkDigests.put(id, result);
+        return result;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 public class Robot {
     private int x = 0; 
@@ -7,61 +8,139 @@ public class Robot {
     private int visitedPackets; 
     private int coveredPackets; 
     private double battery; 
-    private List<Node> unvisitedNodes = new ArrayList<>(); 
+    private BitSet visitedIds = new BitSet(); 
     private List<Node> feasibleNodes = new ArrayList<>();
     private List<Node> route = new ArrayList<>(); 
     private Node greatestPCRNode = null; 
     private Node initialDepot; 
     private double totalDistance; 
+    private PCRSelector selector; 
+    private FeasibilityTracker feasibilityTracker; 
+    private SimulationContext context; 
+    private List<Node> candidates; 
+    private SimulationMetrics metrics = new SimulationMetrics(); 
+    private long lastSelectionNanos; 
+    private long checksAtLastStep; 
+    private boolean feasibleDistancesCurrent; 
 
 
-    Robot(double battery, List<Node> nodeList){
+    Robot(SimulationContext context, double battery){
+        this(context, battery, context.getNodeList());
+    }
+
+    // A robot that may only visit the given nodes (e.g. its sector of a fleet), although it still covers any node in range 
+    Robot(SimulationContext context, double battery, List<Node> candidates){
+        this.context = context;
         this.battery = battery; 
+        this.candidates = candidates;
         initialDepot = new Node(); 
         route.add(initialDepot);
-        unvisitedNodes = nodeList;
     }
     
     public double distanceFromRobot(Node node){
-        int dx = this.x - node.getX();
-        int dy = this.y - node.getY();
+        long dx = (long) this.x - node.getX();
+        long dy = (long) this.y - node.getY();
         return Math.sqrt(dx*dx + dy*dy); 
     }
 
     public void moveRobotToNode(Node node){
-        totalDistance += this.distanceFromRobot(node); 
-        battery -= this.distanceFromRobot(node)/36; 
+        GreedyStepEvent event = new GreedyStepEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int prize = node.getPrize();
+        double distance = this.distanceFromRobot(node);
+        totalDistance += distance; 
+        battery -= distance/36; 
         x = node.getX();
         y = node.getY(); 
+        feasibleDistancesCurrent = false;
         visitedPackets += node.getPackets();
-        coveredPackets += node.getPrize() - node.getPackets(); 
-        totalPackets += node.getPrize(); 
-        unvisitedNodes.remove(node);
+        coveredPackets += prize - node.getPackets(); 
+        totalPackets += prize; 
+        visitedIds.set(node.getId());
         route.add(node);
-        node.drainNetwork();
+        long drainStart = System.nanoTime();
+        int prizeUpdates = node.drainNetwork();
+        metrics.recordMove(drainStart - start, System.nanoTime() - drainStart, prizeUpdates);
+
+        long checks = getFeasibilityChecks();
+        if(event.shouldCommit()){
+            event.step = route.size() - 1;
+            event.nodeId = node.getId();
+            event.prize = prize;
+            event.distance = distance;
+            event.battery = battery;
+            event.selectionTime = lastSelectionNanos;
+            event.feasibilityChecks = checks - checksAtLastStep;
+            event.prizeUpdates = prizeUpdates;
+            event.commit();
+        }
+        checksAtLastStep = checks;
+        lastSelectionNanos = 0;
     }
 
+    // Only nodes that can still become feasible are scanned, see FeasibilityTracker 
     public void setFeasibleNodes(){
+        long start = System.nanoTime();
         feasibleNodes.clear(); 
         greatestPCRNode = null;
-        double energyToDepot; 
-        double energyToNode; 
-        for(Node node : unvisitedNodes){
-            energyToDepot = Math.sqrt(node.getX()*node.getX() + node.getY() * node.getY())/36;
-            energyToNode = this.distanceFromRobot(node)/36;
-            if(battery > energyToDepot + energyToNode && node.getPrize() != 0){
-                feasibleNodes.add(node);
-            }
+        if(feasibilityTracker == null){
+            feasibilityTracker = new FeasibilityTracker(candidates);
         }
+        feasibilityTracker.collectFeasible(this, feasibleNodes);
+        feasibleDistancesCurrent = true;
+        metrics.addFeasibility(System.nanoTime() - start);
+    }
+
+    // A node is feasible if it still has a prize and the robot can get there & back to the depot 
+    public boolean canReach(Node node){
+        double energyToDepot = Math.sqrt((long) node.getX()*node.getX() + (long) node.getY() * node.getY())/36;
+        double energyToNode = this.distanceFromRobot(node)/36;
+        return battery > energyToDepot + energyToNode && node.getPrize() != 0;
     }
 
 
     public void returnHome(){ 
-        totalDistance += Math.sqrt(this.x * this.x + this.y * this.y);
-        battery -= Math.sqrt(this.x * this.x + this.y * this.y)/36;
+        totalDistance += Math.sqrt((long) this.x * this.x + (long) this.y * this.y);
+        battery -= Math.sqrt((long) this.x * this.x + (long) this.y * this.y)/36;
         this.x = 0; 
         this.y = 0; 
+        feasibleDistancesCurrent = false;
         route.add(initialDepot);
+    }
+
+    /*
+     * Used by RouteImprover once the robot is home: replaces the route with a 
+     * reordering of the same nodes (still starting & ending at the depot) and 
+     * gives back the battery the shorter route saves 
+     */
+    public void reorderRoute(List<Node> newRoute){
+        double newDistance = 0;
+        for(int i = 1; i < newRoute.size(); i++){
+            newDistance += newRoute.get(i - 1).getDistance(newRoute.get(i));
+        }
+        battery += (totalDistance - newDistance)/36;
+        totalDistance = newDistance;
+        route = new ArrayList<>(newRoute);
+    }
+
+    // Used by RouteImprover: visits the node between route positions index-1 & index, collecting its prize like moveRobotToNode 
+    public void insertIntoRoute(int index, Node node){
+        Node before = route.get(index - 1);
+        Node after = route.get(index);
+        double addedDistance = before.getDistance(node) + node.getDistance(after) - before.getDistance(after);
+        totalDistance += addedDistance;
+        battery -= addedDistance/36;
+        visitedPackets += node.getPackets();
+        coveredPackets += node.getPrize() - node.getPackets();
+        totalPackets += node.getPrize();
+        visitedIds.set(node.getId());
+        route.add(index, node);
+        node.drainNetwork();
+    }
+
+    // Prints the robot's final state & route; kept out of returnHome so sweeps running in parallel stay quiet 
+    public void printSummary(){
         System.out.println(this);
 
         String routeStr = "";
@@ -85,16 +164,65 @@ public class Robot {
         return route; 
     }
 
+    /*
+     * Distance from the robot to the k-th feasible node. setFeasibleNodes already 
+     * worked these out, so they are looked up until the robot moves 
+     */
+    public double feasibleDistance(int k){
+        if(feasibleDistancesCurrent){
+            return feasibilityTracker.distances()[k];
+        }
+        return this.distanceFromRobot(feasibleNodes.get(k));
+    }
+
     public void findBestPCR(){
-        for(Node node : feasibleNodes){
+        long start = System.nanoTime();
+        for(int k = 0; k < feasibleNodes.size(); k++){
+            Node node = feasibleNodes.get(k);
             int prize = node.getPrize(); 
-            double cost = this.distanceFromRobot(node); 
+            double cost = this.feasibleDistance(k); 
             double PCR = prize/cost; 
             node.setPCR(PCR);
             if(greatestPCRNode == null || node.getPCR() > greatestPCRNode.getPCR()){
                 greatestPCRNode = node; 
             }
         }
+        lastSelectionNanos = System.nanoTime() - start;
+        metrics.addSelection(lastSelectionNanos);
+    }
+
+    /*
+     * Lazy version of setFeasibleNodes + findBestPCR. It returns the same node the 
+     * full scan would pick, or null once nothing is feasible, but only scores the 
+     * nodes whose PCR bound could still beat the best one found (see PCRSelector) 
+     */
+    public Node selectNextNode(){
+        long start = System.nanoTime();
+        if(selector == null){
+            selector = new PCRSelector(candidates);
+        }
+        greatestPCRNode = selector.select(this);
+        lastSelectionNanos = System.nanoTime() - start;
+        metrics.addSelection(lastSelectionNanos);
+        return greatestPCRNode;
+    }
+
+    // Nodes given the full feasibility test so far, by setFeasibleNodes or selectNextNode 
+    public long getFeasibilityChecks(){
+        long checks = 0;
+        if(feasibilityTracker != null){
+            checks += feasibilityTracker.getChecks();
+        }
+        if(selector != null){
+            checks += selector.getChecks();
+        }
+        return checks;
+    }
+
+    // Per-phase timings & counters of this robot's run so far, see SimulationMetrics 
+    public SimulationMetrics getMetrics(){
+        metrics.setFeasibilityChecks(getFeasibilityChecks());
+        return metrics;
     }
 
     public Node getGreatestNode(){
@@ -102,6 +230,12 @@ public class Robot {
     }
 
     public List<Node> getUnvisitedNodes(){
+        List<Node> unvisitedNodes = new ArrayList<>();
+        for(Node node : context.getNodeList()){
+            if(!visitedIds.get(node.getId())){
+                unvisitedNodes.add(node);
+            }
+        }
         return unvisitedNodes;
     }
 
@@ -113,6 +247,18 @@ public class Robot {
         }
 
 
+public int getX() {
+    return x;
+}
+
+public int getY() {
+    return y;
+}
+
+public SimulationContext getContext() {
+    return context;
+}
+
 public double getBattery() {
     return battery;
 }
@@ -0,0 +1,418 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Local search run on the robot's route after the greedy algorithm has brought
+ * it home. The greedy picks nodes by prize/cost from wherever the robot is, so
+ * the closed route it leaves behind usually has crossings & detours.
+ *
+ * First the route is shortened without changing which nodes it visits:
+ *   - 2-opt replaces two edges with two shorter ones by reversing the path between them
+ *   - Or-opt moves a run of 1-3 consecutive nodes (either way round) next to a nearby node
+ * Moves are scored from the change in length alone. Only each node's few nearest
+ * route nodes are tried as partners, and a node whose neighborhood produced no
+ * improvement is skipped (its "don't-look bit" is set) until a move touches it.
+ *
+ * The battery the shorter route gives back is then spent on more nodes: each
+ * round inserts the unvisited node with the best prize per added distance, as
+ * long as the battery stays above zero. Candidates for an edge can only lie
+ * inside the ellipse of points that fit in the remaining battery (and, once a
+ * good insertion is known, that could still beat it), so only the grid cells
+ * under that ellipse's bounding box are searched.
+ *
+ * Everything stops once the time budget runs out; the route is only ever
+ * replaced by a shorter one, so stopping early is always safe.
+ */
+public class RouteImprover {
+    private static final int NEIGHBORS = 8;
+    private static final int MAX_SEGMENT = 3;
+    private static final double EPSILON = 1e-9;
+
+    private long timeBudgetNanos;
+    private long deadline;
+    private double distanceSaved;
+    private int nodesInserted;
+
+    // Route being improved: city 0 is the depot, tour[] holds cities in route order & pos[] the inverse
+    private Node[] cities;
+    private int[] tour;
+    private int[] pos;
+    private int[][] neighbors;
+    private boolean[] queued;
+    private int[] queue;
+    private int queueHead;
+    private int queueSize;
+
+    public RouteImprover(long timeBudgetMillis) {
+        this.timeBudgetNanos = timeBudgetMillis * 1_000_000;
+    }
+
+    // Time budget per route in milliseconds, set with -Droute.improve=MS (0, the default, turns it off)
+    public static long configuredBudget() {
+        return Long.getLong("route.improve", 0);
+    }
+
+    /*
+     * Improves the route of a robot that has returned home. Returns true if the
+     * route changed
+     */
+    public boolean improve(Robot robot) {
+        deadline = System.nanoTime() + timeBudgetNanos;
+        distanceSaved = 0;
+        nodesInserted = 0;
+        List<Node> route = robot.getRoute();
+        if (route.size() < 2 || route.get(route.size() - 1).getId() != 0) {
+            throw new IllegalStateException("The robot has to return home before its route is improved");
+        }
+
+        double before = robot.getTotalDistance();
+        if (route.size() > 4) {
+            List<Node> shorter = shorten(route);
+            if (shorter != null) {
+                robot.reorderRoute(shorter);
+                distanceSaved = before - robot.getTotalDistance();
+            }
+        }
+        insertNodes(robot);
+        return distanceSaved > 0 || nodesInserted > 0;
+    }
+
+    public double getDistanceSaved() {
+        return distanceSaved;
+    }
+
+    public int getNodesInserted() {
+        return nodesInserted;
+    }
+
+    private boolean timeLeft() {
+        return System.nanoTime() < deadline;
+    }
+
+    // Runs 2-opt & Or-opt to a local optimum (or the deadline) and returns the new route if it is shorter
+    private List<Node> shorten(List<Node> route) {
+        int m = route.size() - 1;
+        cities = route.subList(0, m).toArray(new Node[0]);
+        tour = new int[m];
+        pos = new int[m];
+        for (int i = 0; i < m; i++) {
+            tour[i] = i;
+            pos[i] = i;
+        }
+        double startLength = tourLength();
+        buildNeighborLists();
+
+        queued = new boolean[m];
+        queue = new int[m];
+        queueHead = 0;
+        queueSize = 0;
+        for (int i = 0; i < m; i++) {
+            push(i);
+        }
+        while (queueSize > 0 && timeLeft()) {
+            int a = queue[queueHead];
+            queueHead = (queueHead + 1) % queue.length;
+            queueSize--;
+            queued[a] = false;
+            if (twoOpt(a) || orOpt(a)) {
+                push(a);
+            }
+        }
+
+        if (tourLength() >= startLength - EPSILON) {
+            return null;
+        }
+        // Rotate the cycle so it starts & ends at the depot again
+        List<Node> improved = new ArrayList<>(m + 1);
+        for (int k = 0; k < m; k++) {
+            improved.add(cities[tour[(pos[0] + k) % m]]);
+        }
+        improved.add(cities[0]);
+        return improved;
+    }
+
+    private void push(int city) {
+        if (!queued[city]) {
+            queued[city] = true;
+            queue[(queueHead + queueSize) % queue.length] = city;
+            queueSize++;
+        }
+    }
+
+    private double dist(int a, int b) {
+        return cities[a].getDistance(cities[b]);
+    }
+
+    private int next(int city) {
+        return tour[(pos[city] + 1) % tour.length];
+    }
+
+    private int prev(int city) {
+        return tour[(pos[city] - 1 + tour.length) % tour.length];
+    }
+
+    private double tourLength() {
+        double length = 0;
+        for (int i = 0; i < tour.length; i++) {
+            length += dist(tour[i], tour[(i + 1) % tour.length]);
+        }
+        return length;
+    }
+
+    // The NEIGHBORS closest route nodes of every route node, found by widening a box over a grid of the route
+    private void buildNeighborLists() {
+        int m = cities.length;
+        List<Node> routeNodes = Arrays.asList(cities);
+        SpatialGrid grid = new SpatialGrid(routeNodes, 1);
+        long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+        for (Node node : cities) {
+            minX = Math.min(minX, node.getX());
+            minY = Math.min(minY, node.getY());
+            maxX = Math.max(maxX, node.getX());
+            maxY = Math.max(maxY, node.getY());
+        }
+        double startRadius = Math.max(1, Math.sqrt((double) (maxX - minX + 1) * (maxY - minY + 1) / m) * 2);
+        int wanted = Math.min(NEIGHBORS, m - 1);
+
+        neighbors = new int[m][];
+        int[] found = new int[m];
+        double[] foundDist = new double[m];
+        for (int a = 0; a < m; a++) {
+            final int city = a;
+            Node node = cities[a];
+            double radius = startRadius;
+            while (true) {
+                final double r = radius;
+                int[] count = {0};
+                grid.forEachInBox(node.getX() - r, node.getY() - r, node.getX() + r, node.getY() + r, i -> {
+                    if (i != city && node.getDistance(cities[i]) <= r) {
+                        found[count[0]++] = i;
+                    }
+                });
+                if (count[0] >= wanted) {
+                    for (int k = 0; k < count[0]; k++) {
+                        foundDist[k] = node.getDistance(cities[found[k]]);
+                    }
+                    neighbors[a] = closest(found, foundDist, count[0], wanted);
+                    break;
+                }
+                radius *= 2;
+            }
+        }
+    }
+
+    // Partial selection sort of the k closest entries, ties broken by city index
+    private static int[] closest(int[] ids, double[] dists, int count, int k) {
+        int[] result = new int[k];
+        for (int t = 0; t < k; t++) {
+            int best = t;
+            for (int i = t + 1; i < count; i++) {
+                if (dists[i] < dists[best] || (dists[i] == dists[best] && ids[i] < ids[best])) {
+                    best = i;
+                }
+            }
+            int id = ids[best]; ids[best] = ids[t]; ids[t] = id;
+            double d = dists[best]; dists[best] = dists[t]; dists[t] = d;
+            result[t] = ids[t];
+        }
+        return result;
+    }
+
+    /*
+     * Tries to replace an edge at a with a shorter edge to one of its neighbors,
+     * in both directions around the route. Applies the first improving move found
+     */
+    private boolean twoOpt(int a) {
+        for (int direction = 0; direction < 2; direction++) {
+            int b = direction == 0 ? next(a) : prev(a);
+            double ab = dist(a, b);
+            for (int c : neighbors[a]) {
+                double ac = dist(a, c);
+                if (ac >= ab) {
+                    break;
+                }
+                int d = direction == 0 ? next(c) : prev(c);
+                if (c == b || d == a) {
+                    continue;
+                }
+                double delta = ac + dist(b, d) - ab - dist(c, d);
+                if (delta < -EPSILON) {
+                    // a->b ... c->d becomes a->c ... b->d (or the mirror image going backwards)
+                    if (direction == 0) {
+                        reverse(pos[b], pos[c]);
+                    } else {
+                        reverse(pos[c], pos[b]);
+                    }
+                    push(b);
+                    push(c);
+                    push(d);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Reverses the route from position i forward to position j, flipping whichever side of the cycle is shorter
+    private void reverse(int i, int j) {
+        int m = tour.length;
+        int length = (j - i + m) % m + 1;
+        if (2 * length > m) {
+            int start = (j + 1) % m;
+            j = (i - 1 + m) % m;
+            i = start;
+            length = m - length;
+        }
+        for (int k = 0; k < length / 2; k++) {
+            int left = (i + k) % m;
+            int right = (j - k + m) % m;
+            int city = tour[left];
+            tour[left] = tour[right];
+            tour[right] = city;
+            pos[tour[left]] = left;
+            pos[tour[right]] = right;
+        }
+    }
+
+    /*
+     * Tries to move the run of 1 to MAX_SEGMENT nodes starting at a next to one of
+     * the neighbors of its first or last node, in whichever orientation is shorter
+     */
+    private boolean orOpt(int a) {
+        int m = tour.length;
+        for (int length = 1; length <= MAX_SEGMENT && length + 2 < m; length++) {
+            int first = a;
+            int last = tour[(pos[a] + length - 1) % m];
+            int before = prev(first);
+            int after = next(last);
+            double removeGain = dist(before, first) + dist(last, after) - dist(before, after);
+            if (removeGain <= EPSILON) {
+                continue;
+            }
+            for (int end = 0; end < 2; end++) {
+                int[] candidates = neighbors[end == 0 ? first : last];
+                for (int c : candidates) {
+                    if (inSegment(c, first, length)) {
+                        continue;
+                    }
+                    for (int side = 0; side < 2; side++) {
+                        // The edge f->g (in route order) the run would be placed into
+                        int f = side == 0 ? c : prev(c);
+                        int g = side == 0 ? next(c) : c;
+                        if (inSegment(f, first, length) || inSegment(g, first, length)) {
+                            continue;
+                        }
+                        double fg = dist(f, g);
+                        double forward = dist(f, first) + dist(last, g) - fg;
+                        double backward = dist(f, last) + dist(first, g) - fg;
+                        boolean reversed = backward < forward;
+                        if (Math.min(forward, backward) - removeGain < -EPSILON) {
+                            moveSegment(first, length, f, reversed);
+                            push(before);
+                            push(after);
+                            push(f);
+                            push(g);
+                            push(first);
+                            push(last);
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean inSegment(int city, int first, int length) {
+        return (pos[city] - pos[first] + tour.length) % tour.length < length;
+    }
+
+    // Takes the run out of the route and puts it back right after city f
+    private void moveSegment(int first, int length, int f, boolean reversed) {
+        int m = tour.length;
+        int[] segment = new int[length];
+        for (int k = 0; k < length; k++) {
+            segment[reversed ? length - 1 - k : k] = tour[(pos[first] + k) % m];
+        }
+        int[] rebuilt = new int[m];
+        int size = 0;
+        int start = (pos[first] + length) % m;
+        for (int k = 0; k < m - length; k++) {
+            int city = tour[(start + k) % m];
+            rebuilt[size++] = city;
+            if (city == f) {
+                for (int s : segment) {
+                    rebuilt[size++] = s;
+                }
+            }
+        }
+        tour = rebuilt;
+        for (int i = 0; i < m; i++) {
+            pos[tour[i]] = i;
+        }
+    }
+
+    // Best insertion found so far in a round
+    private static class Insertion {
+        Node node;
+        int index;
+        double ratio;
+    }
+
+    /*
+     * Spends the leftover battery on unvisited nodes, one round per insertion.
+     * Each round looks at every edge of the route & the nodes that fit in the
+     * remaining battery around it, and inserts the best prize per added distance
+     */
+    private void insertNodes(Robot robot) {
+        List<Node> nodeList = robot.getContext().getNodeList();
+        SpatialGrid grid = null;
+        // Prizes only go down, so the largest one now bounds every prize seen later
+        int maxPrize = 0;
+        while (timeLeft() && robot.getBattery() > 0) {
+            if (grid == null) {
+                grid = new SpatialGrid(nodeList, 1);
+                for (Node node : nodeList) {
+                    maxPrize = Math.max(maxPrize, node.getPrize());
+                }
+            }
+            List<Node> route = robot.getRoute();
+            double slack = robot.getBattery() * 36;
+            Insertion best = new Insertion();
+
+            for (int index = 1; index < route.size() && timeLeft(); index++) {
+                Node p = route.get(index - 1);
+                Node q = route.get(index);
+                double pq = p.getDistance(q);
+                // A node adding more than maxPrize / best ratio can't beat the best insertion found so far
+                double limit = best.node == null ? slack : Math.min(slack, maxPrize / best.ratio);
+                // Points with p->c->q shorter than pq + limit lie in an ellipse with foci p & q
+                double reach = Math.sqrt(limit * (2 * pq + limit)) / 2;
+                int insertAt = index;
+                grid.forEachInBox(Math.min(p.getX(), q.getX()) - reach, Math.min(p.getY(), q.getY()) - reach,
+                        Math.max(p.getX(), q.getX()) + reach, Math.max(p.getY(), q.getY()) + reach, i -> {
+                    Node c = nodeList.get(i);
+                    if (c.getPrize() <= 0) {
+                        return;
+                    }
+                    double cost = p.getDistance(c) + c.getDistance(q) - pq;
+                    if (cost >= slack) {
+                        return;
+                    }
+                    double ratio = c.getPrize() / Math.max(cost, EPSILON);
+                    if (best.node == null || ratio > best.ratio || (ratio == best.ratio && c.getId() < best.node.getId())) {
+                        best.node = c;
+                        best.index = insertAt;
+                        best.ratio = ratio;
+                    }
+                });
+            }
+            if (best.node == null) {
+                break;
+            }
+            robot.insertIntoRoute(best.index, best.node);
+            nodesInserted++;
+        }
+    }
+}
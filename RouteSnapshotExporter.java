@@ -0,0 +1,291 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+
+/**
+ * Writes a PNG and/or SVG picture of each run's route, without a display. Each
+ * picture shows the nodes, the nodes the route covers (green) and the route,
+ * drawn by the same NetworkRenderer as Visualization.
+ *
+ * Snapshots are rendered & encoded on a pool of worker threads and the files
+ * are written by one background I/O thread, so a sweep only pays for copying the
+ * route when it submits a snapshot. The nodes of a network are rendered once,
+ * from a copy of the network checked out of its NetworkSnapshot, and that image
+ * is reused for every run on the network. Only the layers of the most recently
+ * used networks are kept (each holds a copy of the network & a full-size
+ * image); an evicted network is rendered again if it comes back. At most a few
+ * snapshots per worker are in flight; submitting more waits for them.
+ *
+ * Turn it on for BatchTester with -Dexport.snapshots=png,svg (files go into
+ * -Dexport.snapshots.dir, "snapshots" by default), or with the snapshots
+ * setting of a SweepRunner spec. On a machine without a display, run with
+ * -Djava.awt.headless=true.
+ */
+public class RouteSnapshotExporter implements AutoCloseable {
+    private static final int WIDTH = 1200;
+    private static final int HEIGHT = 900;
+    private static final int PADDING = 50;
+    private static final int IN_FLIGHT_PER_WORKER = 4;
+    private static final int MAX_LAYERS = 16;
+
+    // The rendered nodes of one network, shared by every run on it
+    private static class NetworkLayer {
+        SimulationContext context;
+        NetworkRenderer renderer;
+        NetworkRenderer.Viewport view;
+        BufferedImage image;
+    }
+
+    // One encoded file waiting to be written; a null path stops the writer
+    private static class Output {
+        String path;
+        byte[] bytes;
+    }
+
+    private String directory;
+    private boolean png;
+    private boolean svg;
+    private ExecutorService renderPool;
+    private Semaphore inFlight;
+    // Least recently used first; guarded by its own lock, the rendering itself happens outside it
+    private Map<NetworkSnapshot, FutureTask<NetworkLayer>> layers = new LinkedHashMap<NetworkSnapshot, FutureTask<NetworkLayer>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<NetworkSnapshot, FutureTask<NetworkLayer>> eldest) {
+            return size() > MAX_LAYERS;
+        }
+    };
+    private BlockingQueue<Output> writeQueue;
+    private Thread writerThread;
+    private volatile Throwable failure;
+    private volatile int written;
+
+    // formats is a comma-separated list of png & svg
+    public RouteSnapshotExporter(String directory, String formats, int renderThreads) throws IOException {
+        this.directory = directory;
+        for (String format : formats.toLowerCase().split(",")) {
+            switch (format.trim()) {
+                case "png": png = true; break;
+                case "svg": svg = true; break;
+                case "": break;
+                default: throw new IllegalArgumentException("Unknown snapshot format " + format.trim());
+            }
+        }
+        Files.createDirectories(Paths.get(directory));
+        int threads = Math.max(1, renderThreads);
+        renderPool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "snapshot-render");
+            thread.setDaemon(true);
+            return thread;
+        });
+        inFlight = new Semaphore(threads * IN_FLIGHT_PER_WORKER);
+        writeQueue = new ArrayBlockingQueue<>(threads * IN_FLIGHT_PER_WORKER * 2);
+        writerThread = new Thread(this::writeFiles, "snapshot-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // The exporter asked for with -Dexport.snapshots, or null if it isn't set
+    public static RouteSnapshotExporter configured(int renderThreads) throws IOException {
+        String formats = System.getProperty("export.snapshots");
+        if (formats == null || formats.trim().isEmpty()) {
+            return null;
+        }
+        return new RouteSnapshotExporter(System.getProperty("export.snapshots.dir", "snapshots"), formats, renderThreads);
+    }
+
+    // Route as node IDs, starting & ending with the depot (ID 0)
+    public static List<Integer> routeIds(Robot robot) {
+        List<Integer> ids = new ArrayList<>(robot.getRoute().size());
+        for (Node node : robot.getRoute()) {
+            ids.add(node.getId());
+        }
+        return ids;
+    }
+
+    /*
+     * Queues a picture of the route on the network, written as name.png and/or
+     * name.svg. Only the route IDs are kept, so the run's context can be
+     * released as soon as this returns
+     */
+    public void submit(String name, NetworkSnapshot snapshot, List<Integer> route) {
+        checkFailure();
+        int[] routeIds = new int[route.size()];
+        for (int i = 0; i < routeIds.length; i++) {
+            routeIds[i] = route.get(i);
+        }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing a snapshot", e);
+        }
+        renderPool.execute(() -> {
+            try {
+                render(name, snapshot, routeIds);
+            } catch (Throwable t) {
+                // Errors too (AWTError, out of memory), or the pool would drop them & close would report success
+                failure = t;
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void render(String name, NetworkSnapshot snapshot, int[] routeIds) throws IOException, InterruptedException {
+        NetworkLayer layer = layer(snapshot);
+
+        // Route in the layer's own copy of the network; the depot isn't a node of the network
+        List<Node> route = new ArrayList<>(routeIds.length);
+        BitSet covered = new BitSet();
+        for (int id : routeIds) {
+            if (id == 0) {
+                route.add(new Node(0, 0, 0, 0));
+                continue;
+            }
+            Node node = layer.context.getNode(id);
+            route.add(node);
+            covered.set(id);
+            for (Node neighbor : node.getNetwork()) {
+                covered.set(neighbor.getId());
+            }
+        }
+
+        if (png) {
+            BufferedImage image = new BufferedImage(layer.image.getWidth(), layer.image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2 = image.createGraphics();
+            try {
+                g2.drawImage(layer.image, 0, 0, null);
+                layer.renderer.paintCoverage(g2, layer.view, covered);
+                layer.renderer.paintRoute(g2, layer.view, route);
+            } finally {
+                g2.dispose();
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+            ImageIO.write(image, "png", bytes);
+            queueWrite(name + ".png", bytes.toByteArray());
+        }
+        if (svg) {
+            StringBuilder document = new StringBuilder(1 << 16);
+            layer.renderer.writeSvg(document, layer.view, covered, route);
+            queueWrite(name + ".svg", document.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // The network's layer, rendered by the first worker that needs it while the others wait for it
+    private NetworkLayer layer(NetworkSnapshot snapshot) throws InterruptedException {
+        FutureTask<NetworkLayer> task;
+        boolean render = false;
+        synchronized (layers) {
+            task = layers.get(snapshot);
+            if (task == null) {
+                task = new FutureTask<>(() -> renderNetwork(snapshot));
+                layers.put(snapshot, task);
+                render = true;
+            }
+        }
+        if (render) {
+            task.run();
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            // Don't keep the failure, so the next run on the network tries again
+            synchronized (layers) {
+                layers.remove(snapshot, task);
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+    }
+
+    // The network with its initial packets, the depot & its static layers, fitted to the picture
+    private static NetworkLayer renderNetwork(NetworkSnapshot snapshot) {
+        NetworkLayer layer = new NetworkLayer();
+        layer.context = snapshot.materialize();
+        List<Node> nodes = new ArrayList<>(layer.context.getNodeList());
+        nodes.add(new Node(0, 0, 0, 0));
+        layer.renderer = new NetworkRenderer(nodes, snapshot.getTransmissionRange());
+        layer.view = layer.renderer.fit(WIDTH, HEIGHT, 0, 0, PADDING);
+        layer.image = layer.renderer.renderStatic(layer.view);
+        return layer;
+    }
+
+    private void queueWrite(String filename, byte[] bytes) throws InterruptedException {
+        Output output = new Output();
+        output.path = new File(directory, filename).getPath();
+        output.bytes = bytes;
+        writeQueue.put(output);
+    }
+
+    private void writeFiles() {
+        try {
+            while (true) {
+                Output output = writeQueue.take();
+                if (output.path == null) {
+                    return;
+                }
+                try {
+                    Files.write(Paths.get(output.path), output.bytes);
+                    written++;
+                } catch (Throwable t) {
+                    // Keep writing, so render workers never block on a full queue
+                    failure = t;
+                }
+            }
+        } catch (InterruptedException e) {
+            failure = e;
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("Writing a snapshot failed",
+                failure instanceof IOException ? (IOException) failure : new IOException(failure));
+        }
+    }
+
+    // Number of files written so far
+    public int getWrittenCount() {
+        return written;
+    }
+
+    // Waits for every queued snapshot to be rendered & written
+    @Override
+    public void close() throws IOException {
+        renderPool.shutdown();
+        try {
+            renderPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            writeQueue.put(new Output());
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing snapshots", e);
+        }
+        if (failure != null) {
+            throw failure instanceof IOException ? (IOException) failure : new IOException("Writing snapshots failed", failure);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+import java.util.Arrays;
+
+/**
+ * Single-pass statistics for one measured quantity (packets, distance or
+ * computational time) over any number of runs. Mean and variance are updated
+ * with Welford's method, and the 50th, 95th and 99th percentiles are estimated
+ * with P-square sketches (Jain & Chlamtac), so no values are stored.
+ */
+public class RunningStatistics {
+    // Two-sided 95% critical values of Student's t for 1 to 30 degrees of freedom
+    private static final double[] T_TABLE_95 = {
+        12.7062047, 4.3026527, 3.1824463, 2.7764451, 2.5705818,
+        2.4469119, 2.3646243, 2.3060041, 2.2621572, 2.2281389,
+        2.2009852, 2.1788128, 2.1603687, 2.1447867, 2.1314495,
+        2.1199053, 2.1098156, 2.1009220, 2.0930241, 2.0859634,
+        2.0796138, 2.0738731, 2.0686576, 2.0638986, 2.0595386,
+        2.0555294, 2.0518310, 2.0484071, 2.0452296, 2.0422725
+    };
+    private static final double Z_975 = 1.959963984540054;
+
+    private long count;
+    private double mean;
+    private double squaredDeviations;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private QuantileSketch p50 = new QuantileSketch(0.50);
+    private QuantileSketch p95 = new QuantileSketch(0.95);
+    private QuantileSketch p99 = new QuantileSketch(0.99);
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        p50.add(value);
+        p95.add(value);
+        p99.add(value);
+    }
+
+    public long getCount() { return count; }
+    public double getMean() { return count > 0 ? mean : 0; }
+    public double getMin() { return count > 0 ? min : 0; }
+    public double getMax() { return count > 0 ? max : 0; }
+    public double getP50() { return p50.get(); }
+    public double getP95() { return p95.get(); }
+    public double getP99() { return p99.get(); }
+
+    // Sample variance (n - 1 in the denominator); 0 for fewer than two values
+    public double getVariance() {
+        return count > 1 ? squaredDeviations / (count - 1) : 0;
+    }
+
+    public double getStdDev() {
+        return Math.sqrt(getVariance());
+    }
+
+    // Half-width of the 95% confidence interval for the mean; 0 for fewer than two values
+    public double getConfidence95() {
+        if (count < 2) {
+            return 0;
+        }
+        return tCritical95(count - 1) * getStdDev() / Math.sqrt(count);
+    }
+
+    /*
+     * Two-sided 95% critical value of Student's t. Up to 30 degrees of freedom it
+     * comes from the table; beyond that the Cornish-Fisher expansion around the
+     * normal quantile (Abramowitz & Stegun 26.7.5) is accurate to about 1e-7
+     */
+    public static double tCritical95(long degreesOfFreedom) {
+        if (degreesOfFreedom < 1) {
+            throw new IllegalArgumentException("Degrees of freedom must be positive: " + degreesOfFreedom);
+        }
+        if (degreesOfFreedom <= T_TABLE_95.length) {
+            return T_TABLE_95[(int) degreesOfFreedom - 1];
+        }
+        double z = Z_975;
+        double z2 = z * z;
+        double v = degreesOfFreedom;
+        double g1 = (z2 + 1) * z / 4;
+        double g2 = ((5 * z2 + 16) * z2 + 3) * z / 96;
+        double g3 = (((3 * z2 + 19) * z2 + 17) * z2 - 15) * z / 384;
+        double g4 = ((((79 * z2 + 776) * z2 + 1482) * z2 - 1920) * z2 - 945) * z / 92160;
+        return z + g1 / v + g2 / (v * v) + g3 / (v * v * v) + g4 / (v * v * v * v);
+    }
+
+    /*
+     * P-square estimate of one quantile: five markers whose heights follow the
+     * quantile as values arrive, adjusted with piecewise-parabolic interpolation.
+     * Until five values have been seen the quantile is computed exactly
+     */
+    private static class QuantileSketch {
+        private double p;
+        private double[] heights = new double[5];
+        private double[] positions = new double[5];
+        private double[] desired = new double[5];
+        private double[] increments;
+        private int seen;
+
+        QuantileSketch(double p) {
+            this.p = p;
+            this.increments = new double[] {0, p / 2, p, (1 + p) / 2, 1};
+        }
+
+        void add(double value) {
+            if (seen < 5) {
+                heights[seen++] = value;
+                if (seen == 5) {
+                    Arrays.sort(heights);
+                    for (int i = 0; i < 5; i++) {
+                        positions[i] = i;
+                    }
+                    desired = new double[] {0, 2 * p, 4 * p, 2 + 2 * p, 4};
+                }
+                return;
+            }
+
+            // Find the cell the value falls in, stretching the outer markers if needed
+            int cell;
+            if (value < heights[0]) {
+                heights[0] = value;
+                cell = 0;
+            } else if (value >= heights[4]) {
+                heights[4] = value;
+                cell = 3;
+            } else {
+                cell = 0;
+                while (value >= heights[cell + 1]) {
+                    cell++;
+                }
+            }
+            for (int i = cell + 1; i < 5; i++) {
+                positions[i]++;
+            }
+            for (int i = 0; i < 5; i++) {
+                desired[i] += increments[i];
+            }
+            seen++;
+
+            // Move the middle markers back towards their desired positions
+            for (int i = 1; i <= 3; i++) {
+                double offset = desired[i] - positions[i];
+                if ((offset >= 1 && positions[i + 1] - positions[i] > 1) || (offset <= -1 && positions[i - 1] - positions[i] < -1)) {
+                    int step = offset > 0 ? 1 : -1;
+                    double candidate = parabolic(i, step);
+                    if (heights[i - 1] < candidate && candidate < heights[i + 1]) {
+                        heights[i] = candidate;
+                    } else {
+                        heights[i] += step * (heights[i + step] - heights[i]) / (positions[i + step] - positions[i]);
+                    }
+                    positions[i] += step;
+                }
+            }
+        }
+
+        private double parabolic(int i, int step) {
+            return heights[i] + step / (positions[i + 1] - positions[i - 1]) *
+                ((positions[i] - positions[i - 1] + step) * (heights[i + 1] - heights[i]) / (positions[i + 1] - positions[i]) +
+                 (positions[i + 1] - positions[i] - step) * (heights[i] - heights[i - 1]) / (positions[i] - positions[i - 1]));
+        }
+
+        double get() {
+            if (seen == 0) {
+                return 0;
+            }
+            if (seen >= 5) {
+                return heights[2];
+            }
+            // Exact quantile of the first few values, interpolated between closest ranks
+            double[] sorted = Arrays.copyOf(heights, seen);
+            Arrays.sort(sorted);
+            double rank = p * (seen - 1);
+            int lower = (int) Math.floor(rank);
+            int upper = Math.min(lower + 1, seen - 1);
+            return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+        }
+    }
+}
@@ -31,7 +31,7 @@ public class SensorNetworkRunner {
         System.out.println("Will you be inputting a network? 1 for yes & 0 for no");
         inputtingNetwork = scan.nextInt();
         
-        ListGraph graph = null;
+        SimulationContext context = null;
         Robot robot = null;
         List<Node> nodeList = null;
         List<Node> immutableNodeList = null;
@@ -41,7 +41,8 @@ public class SensorNetworkRunner {
 
         if (inputtingNetwork == 0) {
             autoSetup.setVariables();
-            graph = autoSetup.createNetwork();
+            autoSetup.createNetwork();
+            context = autoSetup.getContext();
             robot = autoSetup.createRobot();
             battery = robot.getBattery(); // Assuming we add this getter
         } else if (inputtingNetwork == 1) {
@@ -55,7 +56,8 @@ public class SensorNetworkRunner {
             
             try {
                 InputNetwork inputNetwork = new InputNetwork(fullFilePath, transmissionRange);
-                graph = inputNetwork.getGraph();
+                System.out.println(String.format("Graph built in %.3f ms, initial prizes in %.3f ms", inputNetwork.getGraphBuildTime(), inputNetwork.getInitialPrizeTime()));
+                context = inputNetwork.getContext();
                 nodeList = inputNetwork.getNodeList();
                 modify = new ArrayList<>(nodeList);
                 modify.add(new Node(0, 0, 0, 0));
@@ -63,17 +65,20 @@ public class SensorNetworkRunner {
                 
                 System.out.println("Enter the amount of battery attributed to robot in watts:");
                 battery = scan.nextDouble();
-                robot = new Robot(battery, nodeList);
-                robot.setFeasibleNodes();
+                robot = new Robot(context, battery);
             } catch (FileNotFoundException e) {
                 System.out.println("File not found. Exiting.");
                 return;
+            } catch (IOException e) {
+                System.out.println("Error reading network file: " + e.getMessage());
+                return;
             }
         }
 
         // Run the algorithm and gather results
         DataExporter.SimulationResult result =
-            runAlgorithm(robot, graph, inputtingNetwork, autoSetup, nodeList, immutableNodeList, transmissionRange, battery);
+            runAlgorithm(robot, context, inputtingNetwork, autoSetup, nodeList, immutableNodeList, transmissionRange, battery);
+        robot.printSummary();
 
         
         // Create exporter and export results
@@ -106,48 +111,114 @@ public class SensorNetworkRunner {
         int transmissionRange = scan.nextInt();
         
         DataExporter exporter = new DataExporter();
+        if (DataExporter.streamingRequested()) {
+            try {
+                exporter.streamTo("multi_simulation_results.csv");
+            } catch (IOException e) {
+                System.out.println("Error opening multi_simulation_results.csv: " + e.getMessage());
+                return;
+            }
+        }
         
-        // For each battery level
+        // Optional results of earlier runs, see ResultCache 
+        ResultCache results;
+        try {
+            results = ResultCache.configured();
+        } catch (IOException e) {
+            System.out.println("Error opening the result cache: " + e.getMessage());
+            return;
+        }
+        
+        // One job per battery level & network, in the same order the sweep used to run them. 
+        // Every network is loaded once & each job checks out its own copy of it, unless the 
+        // result cache already has the run 
+        NetworkSnapshot.Cache networks = new NetworkSnapshot.Cache();
+        List<ParallelSweep.Job> jobs = new ArrayList<>();
+        List<String> jobFiles = new ArrayList<>();
+        List<Integer> jobNetworks = new ArrayList<>();
         for (double battery : batteryValues) {
-            System.out.println("Running simulations for battery level: " + battery + "Wh");
-            
-            // For each network
             for (int networkNum = 1; networkNum <= networksPerBattery; networkNum++) {
-                String filename = "N" + networkNum + ".txt";
-                String fullFilePath = "Networks/" + filename;
-                
-                try {
-                    InputNetwork inputNetwork = new InputNetwork(fullFilePath, transmissionRange);
-                    ListGraph graph = inputNetwork.getGraph();
-                    List<Node> nodeList = inputNetwork.getNodeList();
-                    List<Node> modify = new ArrayList<>(nodeList);
-                    modify.add(new Node(0, 0, 0, 0));
-                    List<Node> immutableNodeList = Collections.unmodifiableList(new ArrayList<>(modify));
-                    
-                    Robot robot = new Robot(battery, nodeList);
-                    robot.setFeasibleNodes();
-                    
-                    // Run algorithm without visualization
-                    DataExporter.SimulationResult result =
-                        runAlgorithm(robot, graph, 1, null, nodeList, immutableNodeList, transmissionRange, battery);
-                    
+                String fullFilePath = "Networks/" + "N" + networkNum + ".txt";
+                int jobIndex = jobs.size();
+                jobs.add(() -> {
+                    String key = null;
+                    if (results != null) {
+                        key = results.key(fullFilePath, transmissionRange, battery, ResultCache.greedyAlgorithm());
+                        DataExporter.SimulationResult cached = results.get(key, "Network", battery, null);
+                        if (cached != null) {
+                            return cached;
+                        }
+                    }
+                    NetworkSnapshot snapshot = networks.get(fullFilePath, transmissionRange);
+                    SimulationContext context = snapshot.acquire();
+                    try {
+                        List<Node> nodeList = context.getNodeList();
+                        List<Node> modify = new ArrayList<>(nodeList);
+                        modify.add(new Node(0, 0, 0, 0));
+                        List<Node> immutableNodeList = Collections.unmodifiableList(new ArrayList<>(modify));
+                        
+                        Robot robot = new Robot(context, battery);
+                        
+                        // Run algorithm without visualization
+                        DataExporter.SimulationResult result = runAlgorithm(robot, context, 1, null, nodeList, immutableNodeList, transmissionRange, battery);
+                        snapshot.recordLoadTimes(result.getMetrics(), jobIndex);
+                        if (results != null) {
+                            results.put(key, result, RouteSnapshotExporter.routeIds(robot));
+                        }
+                        return result;
+                    } finally {
+                        snapshot.release(context);
+                    }
+                });
+                jobFiles.add(fullFilePath);
+                jobNetworks.add(networkNum);
+            }
+        }
+
+        ParallelSweep sweep = new ParallelSweep();
+        System.out.println("Running " + jobs.size() + " simulations on " + sweep.getParallelism() + " threads");
+        try {
+            sweep.run(jobs, new ParallelSweep.ResultHandler() {
+                // Jobs come back in order, so a new battery level starts every networksPerBattery jobs 
+                private void printBatteryHeader(int jobIndex) {
+                    if (jobIndex % networksPerBattery == 0) {
+                        System.out.println("Running simulations for battery level: " + batteryValues[jobIndex / networksPerBattery] + "Wh");
+                    }
+                }
+
+                public void onResult(int jobIndex, DataExporter.SimulationResult result) {
+                    printBatteryHeader(jobIndex);
                     exporter.addResult(result);
-                    
-                    System.out.println("  Completed network " + networkNum + " with " + 
+                    System.out.println("  Completed network " + jobNetworks.get(jobIndex) + " with " + 
                                       result.getDataPackets() + " packets, " + 
                                       result.getDistanceTraveled() + " distance");
-                    
-                } catch (FileNotFoundException e) {
-                    System.out.println("File not found: " + fullFilePath);
-                    System.out.println("Skipping to next network...");
                 }
-            }
+
+                public void onError(int jobIndex, Exception error) {
+                    printBatteryHeader(jobIndex);
+                    if (error instanceof FileNotFoundException) {
+                        System.out.println("File not found: " + jobFiles.get(jobIndex));
+                        System.out.println("Skipping to next network...");
+                    } else {
+                        System.out.println("Simulation failed for " + jobFiles.get(jobIndex) + ": " + error);
+                    }
+                }
+            });
+        } catch (InterruptedException e) {
+            System.out.println("Simulations interrupted. Exiting.");
+            return;
+        }
+        if (results != null) {
+            System.out.println(results.getHits() + " results read from the cache, " + results.getMisses() + " simulated");
         }
-        
-        exporter.calculateAllStatistics();
         
         try {
-            exporter.exportToCSV("multi_simulation_results.csv");
+            if (exporter.isStreaming()) {
+                exporter.finishStreaming();
+            } else {
+                exporter.calculateAllStatistics();
+                exporter.exportToCSV("multi_simulation_results.csv");
+            }
             System.out.println("Results exported to multi_simulation_results.csv");
         } catch (IOException e) {
             System.out.println("Error exporting results: " + e.getMessage());
@@ -156,7 +227,7 @@ public class SensorNetworkRunner {
         
     private static DataExporter.SimulationResult runAlgorithm(
         Robot robot,
-        ListGraph graph,
+        SimulationContext context,
         int inputtingNetwork,
         AutomatedSetup autoSetup,
         List<Node> nodeList,
@@ -164,19 +235,21 @@ public class SensorNetworkRunner {
         int transmissionRange,
         double battery // <-- ADD THIS
     ) {
-        List<Node> feasibleNodes = robot.getFeasibleNodes();
-        long initialTime = System.currentTimeMillis();
+        long initialTime = System.nanoTime();
 
-        while (!feasibleNodes.isEmpty()) {
-            robot.findBestPCR();
-            robot.moveRobotToNode(robot.getGreatestNode());
-            graph.updatePrizes(robot.getGreatestNode().getNetwork());
-            robot.setFeasibleNodes();
-            feasibleNodes = robot.getFeasibleNodes();
+        Node nextNode = robot.selectNextNode();
+        while (nextNode != null) {
+            robot.moveRobotToNode(nextNode);
+            nextNode = robot.selectNextNode();
         }
 
         robot.returnHome();
-        long computationalTime = System.currentTimeMillis() - initialTime;
+
+        // Optional local search on the finished route, see RouteImprover 
+        if (RouteImprover.configuredBudget() > 0) {
+            new RouteImprover(RouteImprover.configuredBudget()).improve(robot);
+        }
+        long computationalTime = (System.nanoTime() - initialTime) / 1_000_000;
 
         return new DataExporter.SimulationResult(
             "Network",
@@ -184,6 +257,6 @@ public class SensorNetworkRunner {
             robot.getTotalDistance(),
             computationalTime,
             battery // ✅ Pass it here instead of setting later
-        );
+        ).setMetrics(robot.getMetrics());
     }
 }
\ No newline at end of file
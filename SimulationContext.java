@@ -0,0 +1,66 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import jdk.jfr.FlightRecorder;
+
+/*
+ * Everything that belongs to one simulation: its nodes, the random number
+ * generator used to place them & the graph connecting them. Nodes are kept
+ * in an array indexed by their ID, so looking a node up is a plain array
+ * access. Each simulation gets its own context, which means two of them can
+ * run in the same JVM at the same time without overwriting each other's nodes
+ */
+public class SimulationContext {
+    // Starting Flight Recorder's event machinery takes a few hundred ms. Every caller sets up a 
+    // context before it starts timing a run, so this keeps that out of the first GreedyStepEvent 
+    static {
+        FlightRecorder.register(GreedyStepEvent.class);
+    }
+
+    private Node[] nodesById = new Node[16];
+    private List<Node> nodeList = new ArrayList<>();
+    private Random rand;
+    private NetworkGraph graph;
+
+    public SimulationContext() {
+        this(new Random());
+    }
+
+    public SimulationContext(Random rand) {
+        this.rand = rand;
+    }
+
+    // Adds a node to the simulation; the node's ID is where it is stored
+    public void addNode(Node node) {
+        if (node.getId() >= nodesById.length) {
+            nodesById = Arrays.copyOf(nodesById, Math.max(node.getId() + 1, nodesById.length * 2));
+        }
+        nodesById[node.getId()] = node;
+        nodeList.add(node);
+    }
+
+    public Node getNode(int id) {
+        return nodesById[id];
+    }
+
+    public List<Node> getNodeList() {
+        return nodeList;
+    }
+
+    public int getNumNodes() {
+        return nodeList.size();
+    }
+
+    public Random getRandom() {
+        return rand;
+    }
+
+    public NetworkGraph getGraph() {
+        return graph;
+    }
+
+    public void setGraph(NetworkGraph graph) {
+        this.graph = graph;
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Timings & counters for one simulation run. Network loading is split into
+ * parsing, graph building & initial prizes; the greedy loop into checking
+ * feasibility, selecting the next node, moving the robot & updating the prizes
+ * its visit drains. Times are measured with System.nanoTime.
+ *
+ * Robot fills in the loop phases as it runs; the load times come from the
+ * InputNetwork or NetworkSnapshot the run's nodes were loaded from. A run on
+ * a network that was already loaded has no load times, and its load columns
+ * are left empty.
+ */
+public class SimulationMetrics {
+    public static final String CSV_HEADER = "Parse (ms),Graph Build (ms),Initial Prizes (ms),Feasibility (ms),Selection (ms)," +
+        "Move (ms),Prize Update (ms),Steps,Feasibility Checks,Feasibility Checks/Step,Prize Updates,Prize Updates/Step";
+    private static final int COLUMNS = 12;
+
+    private long parseNanos;
+    private long graphBuildNanos;
+    private long initialPrizeNanos;
+    private long feasibilityNanos;
+    private long selectionNanos;
+    private long moveNanos;
+    private long prizeUpdateNanos;
+    private long steps;
+    private long feasibilityChecks;
+    private long prizeUpdates;
+    private boolean loadTimesRecorded;
+
+    public void setLoadTimes(long parseNanos, long graphBuildNanos, long initialPrizeNanos) {
+        this.parseNanos = parseNanos;
+        this.graphBuildNanos = graphBuildNanos;
+        this.initialPrizeNanos = initialPrizeNanos;
+        loadTimesRecorded = true;
+    }
+
+    public void clearLoadTimes() {
+        parseNanos = 0;
+        graphBuildNanos = 0;
+        initialPrizeNanos = 0;
+        loadTimesRecorded = false;
+    }
+
+    public boolean hasLoadTimes() {
+        return loadTimesRecorded;
+    }
+
+    public void addFeasibility(long nanos) {
+        feasibilityNanos += nanos;
+    }
+
+    public void addSelection(long nanos) {
+        selectionNanos += nanos;
+    }
+
+    // One greedy step: moving the robot, then draining the visited node's network
+    public void recordMove(long moveNanos, long prizeUpdateNanos, int prizeUpdates) {
+        this.moveNanos += moveNanos;
+        this.prizeUpdateNanos += prizeUpdateNanos;
+        this.prizeUpdates += prizeUpdates;
+        steps++;
+    }
+
+    public void setFeasibilityChecks(long feasibilityChecks) {
+        this.feasibilityChecks = feasibilityChecks;
+    }
+
+    public long getParseNanos() { return parseNanos; }
+    public long getGraphBuildNanos() { return graphBuildNanos; }
+    public long getInitialPrizeNanos() { return initialPrizeNanos; }
+    public long getFeasibilityNanos() { return feasibilityNanos; }
+    public long getSelectionNanos() { return selectionNanos; }
+    public long getMoveNanos() { return moveNanos; }
+    public long getPrizeUpdateNanos() { return prizeUpdateNanos; }
+    public long getSteps() { return steps; }
+    public long getFeasibilityChecks() { return feasibilityChecks; }
+    public long getPrizeUpdates() { return prizeUpdates; }
+
+    // Total time of the greedy loop itself, without loading the network
+    public long getLoopNanos() {
+        return feasibilityNanos + selectionNanos + moveNanos + prizeUpdateNanos;
+    }
+
+    /*
+     * The raw nanoseconds & counts, so a run's metrics can be saved & read back
+     * (see SweepRunner). Load times that weren't recorded are saved as -1
+     */
+    public long[] toArray() {
+        long parse = loadTimesRecorded ? parseNanos : -1;
+        long graphBuild = loadTimesRecorded ? graphBuildNanos : -1;
+        long initialPrize = loadTimesRecorded ? initialPrizeNanos : -1;
+        return new long[] {parse, graphBuild, initialPrize, feasibilityNanos, selectionNanos,
+            moveNanos, prizeUpdateNanos, steps, feasibilityChecks, prizeUpdates};
+    }
+
+    public static SimulationMetrics fromArray(long[] values) {
+        SimulationMetrics metrics = new SimulationMetrics();
+        if (values[0] >= 0) {
+            metrics.setLoadTimes(values[0], values[1], values[2]);
+        }
+        metrics.feasibilityNanos = values[3];
+        metrics.selectionNanos = values[4];
+        metrics.moveNanos = values[5];
+        metrics.prizeUpdateNanos = values[6];
+        metrics.steps = values[7];
+        metrics.feasibilityChecks = values[8];
+        metrics.prizeUpdates = values[9];
+        return metrics;
+    }
+
+    // Appends the CSV_HEADER columns, without a leading or trailing comma
+    public void appendCsv(StringBuilder line) {
+        long perStep = Math.max(steps, 1);
+        if (loadTimesRecorded) {
+            appendMillis(line, parseNanos).append(',');
+            appendMillis(line, graphBuildNanos).append(',');
+            appendMillis(line, initialPrizeNanos).append(',');
+        } else {
+            line.append(",,,");
+        }
+        appendMillis(line, feasibilityNanos).append(',');
+        appendMillis(line, selectionNanos).append(',');
+        appendMillis(line, moveNanos).append(',');
+        appendMillis(line, prizeUpdateNanos).append(',');
+        line.append(steps).append(',').append(feasibilityChecks).append(',');
+        StreamingResultWriter.appendFixed(line, (double) feasibilityChecks / perStep, 2);
+        line.append(',').append(prizeUpdates).append(',');
+        StreamingResultWriter.appendFixed(line, (double) prizeUpdates / perStep, 2);
+    }
+
+    // Empty cells for a result that has no metrics
+    public static void appendEmptyCsv(StringBuilder line) {
+        for (int i = 1; i < COLUMNS; i++) {
+            line.append(',');
+        }
+    }
+
+    private static StringBuilder appendMillis(StringBuilder line, long nanos) {
+        StreamingResultWriter.appendFixed(line, nanos / 1_000_000.0, 3);
+        return line;
+    }
+}
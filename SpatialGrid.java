@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * This spatial grid buckets nodes into square cells whose side is at least
+ * the transmission range. Two nodes that are within range of each other
+ * must then sit in the same cell or in one of the eight cells around it,
+ * so neighbor discovery only has to compare a node against its local 3x3
+ * block of cells instead of against every other node in the network.
+ *
+ * The cells are stored in a compressed layout: cellStart[c] is where cell c
+ * begins in cellNodes, and cellNodes holds indices into the node list.
+ */
+public class SpatialGrid {
+    private List<Node> nodes;
+    private long minX;
+    private long minY;
+    private long cellSize;
+    private int cols;
+    private int rows;
+    private int[] cellStart;
+    private int[] cellNodes;
+
+    // Callback used to hand each in-range pair (i < j, list indices) back to the caller
+    public interface PairConsumer {
+        void accept(int i, int j);
+    }
+
+    // Callback used to hand each node found by a box query (list index) back to the caller
+    public interface NodeConsumer {
+        void accept(int i);
+    }
+
+    // minCellSize is the transmission range when the grid is used for neighbor discovery 
+    public SpatialGrid(List<Node> nodes, int minCellSize) {
+        this.nodes = nodes;
+        int n = nodes.size();
+
+        long maxX = 0;
+        long maxY = 0;
+        minX = 0;
+        minY = 0;
+        if (n > 0) {
+            minX = Long.MAX_VALUE;
+            minY = Long.MAX_VALUE;
+            maxX = Long.MIN_VALUE;
+            maxY = Long.MIN_VALUE;
+            for (Node node : nodes) {
+                minX = Math.min(minX, node.getX());
+                minY = Math.min(minY, node.getY());
+                maxX = Math.max(maxX, node.getX());
+                maxY = Math.max(maxY, node.getY());
+            }
+        }
+
+        // A cell can never be smaller than the range, but a sparse field with a tiny range
+        // would need far more cells than nodes, so the cells are grown until the grid is
+        // proportional to the number of nodes. Bigger cells are still correct, just less selective
+        cellSize = Math.max(minCellSize, 1);
+        long cellLimit = 4L * n + 64;
+        while (((maxX - minX) / cellSize + 1) * ((maxY - minY) / cellSize + 1) > cellLimit) {
+            cellSize *= 2;
+        }
+        cols = (int) ((maxX - minX) / cellSize + 1);
+        rows = (int) ((maxY - minY) / cellSize + 1);
+
+        // Counting sort of the node indices by cell
+        int[] cellOf = new int[n];
+        cellStart = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            cellOf[i] = cellIndex(nodes.get(i).getX(), nodes.get(i).getY());
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellNodes = new int[n];
+        int[] fill = Arrays.copyOf(cellStart, cols * rows);
+        for (int i = 0; i < n; i++) {
+            cellNodes[fill[cellOf[i]]++] = i;
+        }
+    }
+
+    // Accessors for walking the cells directly; the nodes of cell c are getCellNode(k) for k in [getCellStart(c), getCellEnd(c)) 
+    public int getCellCount() {
+        return cols * rows;
+    }
+
+    public int getCellStart(int cell) {
+        return cellStart[cell];
+    }
+
+    public int getCellEnd(int cell) {
+        return cellStart[cell + 1];
+    }
+
+    public int getCellNode(int k) {
+        return cellNodes[k];
+    }
+
+    /*
+     * Reports every node in the cells that overlap the box [minX, maxX] x [minY, maxY].
+     * Nodes in those cells but outside the box are reported too, so callers do their
+     * own exact test
+     */
+    public void forEachInBox(double boxMinX, double boxMinY, double boxMaxX, double boxMaxY, NodeConsumer consumer) {
+        if (nodes.isEmpty() || boxMaxX < minX || boxMaxY < minY || boxMinX > minX + cols * cellSize || boxMinY > minY + rows * cellSize) {
+            return;
+        }
+        int firstCol = (int) Math.max(0, Math.floor((boxMinX - minX) / cellSize));
+        int firstRow = (int) Math.max(0, Math.floor((boxMinY - minY) / cellSize));
+        int lastCol = (int) Math.min(cols - 1, Math.floor((boxMaxX - minX) / cellSize));
+        int lastRow = (int) Math.min(rows - 1, Math.floor((boxMaxY - minY) / cellSize));
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstCol; c <= lastCol; c++) {
+                int cell = r * cols + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    consumer.accept(cellNodes[k]);
+                }
+            }
+        }
+    }
+
+    private int cellIndex(long x, long y) {
+        int col = (int) ((x - minX) / cellSize);
+        int row = (int) ((y - minY) / cellSize);
+        return row * cols + col;
+    }
+
+    /*
+     * Reports every pair of nodes within transmission range, using the same
+     * distance test as the nested loop it replaces. Pairs come out ordered by i
+     * and then by j, which is exactly the order the i<j double loop visits them,
+     * so edges are added to the graph in the same sequence as before.
+     */
+    public void forEachPairInRange(int transmissionRange, PairConsumer consumer) {
+        int[] candidates = new int[16];
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            int col = (int) ((node.getX() - minX) / cellSize);
+            int row = (int) ((node.getY() - minY) / cellSize);
+            int found = 0;
+
+            for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(cols - 1, col + 1); c++) {
+                    int cell = r * cols + c;
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                        int j = cellNodes[k];
+                        if (j > i && node.getDistance(nodes.get(j)) <= transmissionRange) {
+                            if (found == candidates.length) {
+                                candidates = Arrays.copyOf(candidates, found * 2);
+                            }
+                            candidates[found++] = j;
+                        }
+                    }
+                }
+            }
+
+            Arrays.sort(candidates, 0, found);
+            for (int k = 0; k < found; k++) {
+                consumer.accept(i, candidates[k]);
+            }
+        }
+    }
+
+    /*
+     * Compares the nested loop against the grid on the given network files and
+     * prints both setup times. Usage: java SpatialGrid <transmissionRange> <file>...
+     */
+    public static void main(String[] args) throws IOException {
+        int transmissionRange = Integer.parseInt(args[0]);
+        for (int f = 1; f < args.length; f++) {
+            InputNetwork bruteForce = new InputNetwork(args[f], transmissionRange, false);
+            InputNetwork grid = new InputNetwork(args[f], transmissionRange, true);
+
+            boolean sameEdges = true;
+            NetworkGraph expected = bruteForce.getGraph();
+            NetworkGraph actual = grid.getGraph();
+            for (int id = 1; id <= expected.getNumVertices() && sameEdges; id++) {
+                if (expected.getDegree(id) != actual.getDegree(id)) {
+                    sameEdges = false;
+                    break;
+                }
+                for (int k = 0; k < expected.getDegree(id); k++) {
+                    if (expected.getNeighbor(id, k) != actual.getNeighbor(id, k)) {
+                        sameEdges = false;
+                        break;
+                    }
+                }
+            }
+
+            System.out.println(String.format("%s (%d nodes): nested loop %.3f ms, spatial grid %.3f ms, same edges: %b",
+                args[f], grid.getNodeList().size(), bruteForce.getGraphBuildTime(), grid.getGraphBuildTime(), sameEdges));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes simulation results to a CSV file as they come in instead of at the
+ * end of a sweep. Results go into a bounded queue and a background thread
+ * takes them off in batches, formats them and writes each batch through a
+ * buffered writer before flushing it. Whatever finished before a crash is
+ * already on disk, and memory use doesn't depend on the number of runs.
+ * When the queue is full, producers wait for the writer to catch up.
+ */
+public class StreamingResultWriter {
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int BATCH_SIZE = 512;
+
+    // One queued CSV row; a battery header line goes before the first row of each group
+    private static class Row {
+        DataExporter.SimulationResult result;
+        int networkNumber;
+        boolean startsGroup;
+        boolean last;
+    }
+
+    private BlockingQueue<Row> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private BufferedWriter writer;
+    private Thread writerThread;
+    private volatile IOException failure;
+
+    public StreamingResultWriter(String filename) throws IOException {
+        writer = new BufferedWriter(new FileWriter(filename), 1 << 16);
+        writer.write("PCA Algorithm,Data Packets,Distance Traveled,Computational Time," + SimulationMetrics.CSV_HEADER + "\n");
+        writer.flush();
+        writerThread = new Thread(this::writeRows, "result-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Queues a result row, waiting if the writer has fallen QUEUE_CAPACITY rows behind
+    public void write(DataExporter.SimulationResult result, int networkNumber, boolean startsGroup) {
+        checkFailure();
+        Row row = new Row();
+        row.result = result;
+        row.networkNumber = networkNumber;
+        row.startsGroup = startsGroup;
+        enqueue(row);
+    }
+
+    /*
+     * Waits for every queued row to be written and stops the background thread.
+     * The returned writer is positioned after the last row so the caller can
+     * append a trailer (the group statistics) before closing it
+     */
+    public BufferedWriter finish() throws IOException {
+        Row last = new Row();
+        last.last = true;
+        enqueue(last);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the result writer", e);
+        }
+        if (failure != null) {
+            writer.close();
+            throw failure;
+        }
+        return writer;
+    }
+
+    private void enqueue(Row row) {
+        try {
+            queue.put(row);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing a result", e);
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("Writing results failed", failure);
+        }
+    }
+
+    private void writeRows() {
+        List<Row> batch = new ArrayList<>(BATCH_SIZE);
+        StringBuilder line = new StringBuilder(256);
+        boolean done = false;
+        try {
+            while (!done) {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                for (Row row : batch) {
+                    if (row.last) {
+                        done = true;
+                        break;
+                    }
+                    line.setLength(0);
+                    if (row.startsGroup) {
+                        line.append(Math.round(row.result.getBatteryLevel())).append("Wh\n");
+                    }
+                    line.append("Network ").append(row.networkNumber).append(',')
+                        .append(row.result.getDataPackets()).append(',');
+                    appendFixed(line, row.result.getDistanceTraveled(), 2);
+                    line.append(',').append(row.result.getComputationalTime()).append(',');
+                    if (row.result.getMetrics() != null) {
+                        row.result.getMetrics().appendCsv(line);
+                    } else {
+                        SimulationMetrics.appendEmptyCsv(line);
+                    }
+                    line.append('\n');
+                    writer.append(line);
+                }
+                writer.flush();
+                batch.clear();
+            }
+        } catch (IOException e) {
+            failure = e;
+            // Keep taking rows so producers never block on a writer that has died
+            while (!done) {
+                try {
+                    done = queue.take().last;
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            failure = new IOException("Result writer interrupted", e);
+        }
+    }
+
+    // Same text as String.format("%.<decimals>f", value) for the non-negative values written here, without the Formatter;
+    // like Formatter, this rounds the shortest decimal form of the double half-up
+    static void appendFixed(StringBuilder line, double value, int decimals) {
+        if (value < 0 || Double.isNaN(value) || Double.isInfinite(value) || value >= 1e15) {
+            line.append(String.format("%." + decimals + "f", value));
+            return;
+        }
+        line.append(java.math.BigDecimal.valueOf(value).setScale(decimals, java.math.RoundingMode.HALF_UP).toPlainString());
+    }
+}
@@ -0,0 +1,545 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Runs a sweep described by a spec file instead of prompts or hard-coded lists.
+ *
+ * The spec is a properties file:
+ *   networks   = Networks/N*.txt       files or globs, comma-separated
+ *   batteries  = 50, 70, 90            battery levels in Wh
+ *   ranges     = 100                   transmission ranges
+ *   algorithms = greedy, improved      any of greedy, improved, grasp, exact
+ *   output     = sweep_results.csv
+ * and optionally improve.ms (RouteImprover budget, default 50), grasp.starts
+ * (default 32), grasp.alpha (default 0.2), exact.ms (ExactSolver time limit,
+ * default 60000) and seed (default 1).
+ *
+ * The spec expands into one job per algorithm x range x battery x network, in
+ * that order, with networks in natural order (N2 before N10). The list only
+ * depends on the spec & the files found, so every process computes the same one.
+ * With --shard i/N a process runs only the jobs whose index is i modulo N
+ * (i counts from 0), so the work can be split over machines or processes.
+ *
+ * Every finished job is appended to the shard's checkpoint file next to the
+ * output and flushed, so an interrupted shard picks up where it stopped when it
+ * is started again. Failed jobs are not checkpointed and run again on resume.
+ * A checkpoint only resumes a sweep with the same jobs & algorithm settings.
+ * --merge reads the checkpoints of all shards and writes the DataExporter report:
+ * the output file, or one file per algorithm & range when the spec has several.
+ * An unsharded run merges by itself once every job is done.
+ *
+ * With snapshots = png, svg (and optionally snapshots.dir, "snapshots" by
+ * default) every run also gets a picture of its route, see RouteSnapshotExporter.
+ *
+ * Usage: java SweepRunner <spec> [--shard i/N] [--threads T]
+ *        java SweepRunner <spec> --merge
+ */
+public class SweepRunner {
+    private static final String CHECKPOINT_HEADER = "# sweep";
+
+    // The algorithm settings a spec may give & their defaults; each one can change a job's result
+    private static final Map<String, String> SETTINGS = new LinkedHashMap<>();
+    static {
+        SETTINGS.put("improve.ms", "50");
+        SETTINGS.put("grasp.starts", "32");
+        SETTINGS.put("grasp.alpha", "0.2");
+        SETTINGS.put("exact.ms", "60000");
+        SETTINGS.put("seed", "1");
+    }
+
+    // One run of the sweep
+    static class Job {
+        int index;
+        String algorithm;
+        int range;
+        double battery;
+        String network;
+
+        // Identifies the job in checkpoints; unique within a spec
+        String key() {
+            return algorithm + "\t" + range + "\t" + battery + "\t" + network;
+        }
+    }
+
+    private Properties spec;
+    private List<Job> jobs = new ArrayList<>();
+    private String output;
+    private NetworkSnapshot.Cache networks = new NetworkSnapshot.Cache();
+    private RouteSnapshotExporter snapshots;
+
+    public SweepRunner(String specFile) throws IOException {
+        spec = new Properties();
+        try (FileReader reader = new FileReader(specFile)) {
+            spec.load(reader);
+        }
+        output = spec.getProperty("output", "sweep_results.csv").trim();
+        expand();
+    }
+
+    public List<Job> getJobs() {
+        return jobs;
+    }
+
+    private void expand() throws IOException {
+        List<String> networkFiles = expandNetworks(list("networks", "Networks/N*.txt"));
+        if (networkFiles.isEmpty()) {
+            throw new FileNotFoundException("No network files match " + spec.getProperty("networks"));
+        }
+        for (String algorithm : list("algorithms", "greedy")) {
+            if (!Arrays.asList("greedy", "improved", "grasp", "exact").contains(algorithm)) {
+                throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+            }
+            for (String range : list("ranges", "100")) {
+                for (String battery : list("batteries", "50, 70, 90")) {
+                    for (String network : networkFiles) {
+                        Job job = new Job();
+                        job.index = jobs.size();
+                        job.algorithm = algorithm;
+                        job.range = Integer.parseInt(range);
+                        job.battery = Double.parseDouble(battery);
+                        job.network = network;
+                        jobs.add(job);
+                    }
+                }
+            }
+        }
+    }
+
+    // One of the SETTINGS, as the spec gives it or its default
+    private String setting(String name) {
+        return spec.getProperty(name, SETTINGS.get(name)).trim();
+    }
+
+    private List<String> list(String property, String defaultValue) {
+        List<String> values = new ArrayList<>();
+        for (String value : spec.getProperty(property, defaultValue).split(",")) {
+            if (!value.trim().isEmpty()) {
+                values.add(value.trim());
+            }
+        }
+        return values;
+    }
+
+    // Files are kept as given; globs are matched inside their directory & sorted naturally
+    private static List<String> expandNetworks(List<String> patterns) {
+        List<String> files = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (!pattern.contains("*") && !pattern.contains("?") && !pattern.contains("[") && !pattern.contains("{")) {
+                files.add(pattern);
+                continue;
+            }
+            File directory = new File(pattern).getParentFile();
+            String name = new File(pattern).getName();
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + name);
+            String[] matches = (directory != null ? directory : new File(".")).list((dir, file) -> matcher.matches(Paths.get(file)));
+            if (matches == null) {
+                continue;
+            }
+            Arrays.sort(matches, SweepRunner::compareNatural);
+            for (String match : matches) {
+                files.add(directory != null ? new File(directory, match).getPath() : match);
+            }
+        }
+        return files;
+    }
+
+    // Compares runs of digits by their value, so N2.txt comes before N10.txt
+    static int compareNatural(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            if (Character.isDigit(a.charAt(i)) && Character.isDigit(b.charAt(j))) {
+                int endA = i;
+                int endB = j;
+                while (endA < a.length() && Character.isDigit(a.charAt(endA))) endA++;
+                while (endB < b.length() && Character.isDigit(b.charAt(endB))) endB++;
+                String digitsA = a.substring(i, endA).replaceFirst("^0+(?=.)", "");
+                String digitsB = b.substring(j, endB).replaceFirst("^0+(?=.)", "");
+                int compare = digitsA.length() != digitsB.length() ? digitsA.length() - digitsB.length() : digitsA.compareTo(digitsB);
+                if (compare != 0) {
+                    return compare;
+                }
+                i = endA;
+                j = endB;
+            } else {
+                if (a.charAt(i) != b.charAt(j)) {
+                    return a.charAt(i) - b.charAt(j);
+                }
+                i++;
+                j++;
+            }
+        }
+        int rest = (a.length() - i) - (b.length() - j);
+        return rest != 0 ? rest : a.compareTo(b);
+    }
+
+    /*
+     * Changes whenever the job list or an algorithm setting does, so a checkpoint
+     * is never resumed against another sweep
+     */
+    private String fingerprint() {
+        long hash = 1125899906842597L;
+        List<String> lines = new ArrayList<>();
+        for (Job job : jobs) {
+            lines.add(job.key());
+        }
+        for (String name : SETTINGS.keySet()) {
+            lines.add(name + "=" + setting(name));
+        }
+        for (String line : lines) {
+            for (char c : line.toCharArray()) {
+                hash = 31 * hash + c;
+            }
+            hash = 31 * hash + '\n';
+        }
+        return Long.toHexString(hash) + " " + jobs.size();
+    }
+
+    private String checkpointFile(int shard, int shards) {
+        return output + ".shard-" + shard + "-of-" + shards + ".ckpt";
+    }
+
+    /*
+     * Runs the jobs of one shard that its checkpoint doesn't already hold.
+     * Returns true if every job of the shard is done
+     */
+    public boolean runShard(int shard, int shards, int threads) throws IOException, InterruptedException {
+        String checkpoint = checkpointFile(shard, shards);
+        Map<String, DataExporter.SimulationResult> finished = readCheckpoint(checkpoint);
+        List<Job> pending = new ArrayList<>();
+        int shardJobs = 0;
+        for (Job job : jobs) {
+            if (job.index % shards == shard) {
+                shardJobs++;
+                if (!finished.containsKey(job.key())) {
+                    pending.add(job);
+                }
+            }
+        }
+        System.out.println(String.format("Shard %d/%d: %d jobs, %d already done, %d to run", shard, shards, shardJobs, shardJobs - pending.size(), pending.size()));
+
+        boolean newFile = !new File(checkpoint).exists();
+        if (!newFile) {
+            // Drop a line a crash cut short, so new lines aren't appended to it
+            truncateToLastLine(checkpoint);
+        }
+        int[] failures = {0};
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(checkpoint, true))) {
+            if (newFile) {
+                writer.write(CHECKPOINT_HEADER + " " + fingerprint() + "\n");
+                writer.flush();
+            }
+            String snapshotFormats = spec.getProperty("snapshots", "").trim();
+            if (!snapshotFormats.isEmpty()) {
+                snapshots = new RouteSnapshotExporter(spec.getProperty("snapshots.dir", "snapshots").trim(), snapshotFormats, threads);
+            }
+            List<ParallelSweep.Job> sweepJobs = new ArrayList<>();
+            int innerParallelism = threads > 1 ? 1 : Runtime.getRuntime().availableProcessors();
+            for (Job job : pending) {
+                sweepJobs.add(() -> runJob(job, innerParallelism));
+            }
+            new ParallelSweep(threads).run(sweepJobs, new ParallelSweep.ResultHandler() {
+                public void onResult(int jobIndex, DataExporter.SimulationResult result) {
+                    Job job = pending.get(jobIndex);
+                    try {
+                        writer.write(checkpointLine(job, result));
+                        writer.flush();
+                    } catch (IOException e) {
+                        throw new java.io.UncheckedIOException("Writing checkpoint " + checkpoint + " failed", e);
+                    }
+                    System.out.println(String.format("  [%d] %s %s r%d %.0fWh: %d packets, %.2f distance, %dms", job.index,
+                        job.algorithm, job.network, job.range, job.battery, result.getDataPackets(), result.getDistanceTraveled(), result.getComputationalTime()));
+                }
+
+                public void onError(int jobIndex, Exception error) {
+                    Job job = pending.get(jobIndex);
+                    failures[0]++;
+                    System.out.println(String.format("  [%d] %s %s r%d %.0fWh failed: %s", job.index, job.algorithm, job.network, job.range, job.battery, error));
+                }
+            });
+            if (snapshots != null) {
+                snapshots.close();
+                System.out.println(snapshots.getWrittenCount() + " route snapshots written");
+                snapshots = null;
+            }
+        }
+        return failures[0] == 0;
+    }
+
+    private static boolean endsWithNewline(String filename) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+            if (file.length() == 0) {
+                return true;
+            }
+            file.seek(file.length() - 1);
+            return file.read() == '\n';
+        }
+    }
+
+    // Cuts the file back to just after its last '\n'
+    private static void truncateToLastLine(String filename) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+            long end = file.length();
+            while (end > 0) {
+                file.seek(end - 1);
+                if (file.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            file.setLength(end);
+        }
+    }
+
+    private DataExporter.SimulationResult runJob(Job job, int innerParallelism) throws Exception {
+        NetworkSnapshot snapshot = networks.get(job.network, job.range);
+        String name = new File(job.network).getName();
+        long startTime = System.nanoTime();
+        switch (job.algorithm) {
+            case "grasp": {
+                GraspSolver.Solution solution = new GraspSolver(snapshot, job.battery)
+                    .setStarts(Integer.parseInt(setting("grasp.starts")))
+                    .setAlpha(Double.parseDouble(setting("grasp.alpha")))
+                    .setSeed(Long.parseLong(setting("seed")))
+                    .setParallelism(innerParallelism)
+                    .solve();
+                long elapsed = (System.nanoTime() - startTime) / 1_000_000;
+                snapshot(job, snapshot, solution.getRoute());
+                return new DataExporter.SimulationResult(name, solution.getTotalPackets(), solution.getTotalDistance(),
+                    elapsed, job.battery);
+            }
+            case "exact": {
+                ExactSolver.Result result = new ExactSolver(snapshot, job.battery)
+                    .setTimeLimit(Long.parseLong(setting("exact.ms")))
+                    .setParallelism(innerParallelism)
+                    .solve();
+                long elapsed = (System.nanoTime() - startTime) / 1_000_000;
+                snapshot(job, snapshot, result.getRoute());
+                return new DataExporter.SimulationResult(name, result.getTotalPackets(), result.getTotalDistance(),
+                    elapsed, job.battery);
+            }
+            default: {
+                SimulationContext context = snapshot.acquire();
+                try {
+                    Robot robot = new Robot(context, job.battery);
+                    Node next = robot.selectNextNode();
+                    while (next != null) {
+                        robot.moveRobotToNode(next);
+                        next = robot.selectNextNode();
+                    }
+                    robot.returnHome();
+                    if (job.algorithm.equals("improved")) {
+                        new RouteImprover(Long.parseLong(setting("improve.ms"))).improve(robot);
+                    }
+                    long elapsed = (System.nanoTime() - startTime) / 1_000_000;
+                    snapshot(job, snapshot, RouteSnapshotExporter.routeIds(robot));
+                    SimulationMetrics metrics = robot.getMetrics();
+                    snapshot.recordLoadTimes(metrics, job.index);
+                    return new DataExporter.SimulationResult(name, robot.getTotalPackets(), robot.getTotalDistance(),
+                        elapsed, job.battery).setMetrics(metrics);
+                } finally {
+                    snapshot.release(context);
+                }
+            }
+        }
+    }
+
+    // Queues a picture of the route; called after the run's time is taken, since submit may wait for the writers
+    private void snapshot(Job job, NetworkSnapshot snapshot, List<Integer> route) {
+        if (snapshots != null) {
+            String network = new File(job.network).getName().replaceFirst("\\.[^.]*$", "");
+            snapshots.submit(String.format("%s_r%d_%.0fWh_%s", job.algorithm, job.range, job.battery, network), snapshot, route);
+        }
+    }
+
+    // Key, packets, distance (exact), time & the metrics if any, tab-separated
+    private static String checkpointLine(Job job, DataExporter.SimulationResult result) {
+        StringBuilder line = new StringBuilder(job.key());
+        line.append('\t').append(result.getNetworkName()).append('\t').append(result.getDataPackets())
+            .append('\t').append(result.getDistanceTraveled()).append('\t').append(result.getComputationalTime());
+        if (result.getMetrics() != null) {
+            for (long value : result.getMetrics().toArray()) {
+                line.append('\t').append(value);
+            }
+        }
+        return line.append('\n').toString();
+    }
+
+    /*
+     * Reads the results finished so far, by job key. Every line ends with '\n',
+     * so a last line without it was cut short by a crash and is skipped, and so
+     * is any other line that doesn't parse; those jobs simply run again
+     */
+    private Map<String, DataExporter.SimulationResult> readCheckpoint(String checkpoint) throws IOException {
+        Map<String, DataExporter.SimulationResult> finished = new HashMap<>();
+        File file = new File(checkpoint);
+        if (!file.exists()) {
+            return finished;
+        }
+        if (!fromThisSweep(file)) {
+            throw new IOException(checkpoint + " belongs to a different sweep; remove it to start over");
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        if (!lines.isEmpty() && !endsWithNewline(checkpoint)) {
+            // The crash may have cut inside the last field, which would still parse
+            lines.remove(lines.size() - 1);
+        }
+        for (String line : lines) {
+            String[] fields = line.split("\t");
+            if (fields.length != 8 && fields.length != 18) {
+                continue;
+            }
+            try {
+                DataExporter.SimulationResult result = new DataExporter.SimulationResult(fields[4],
+                    Integer.parseInt(fields[5]), Double.parseDouble(fields[6]), Long.parseLong(fields[7]), Double.parseDouble(fields[2]));
+                if (fields.length == 18) {
+                    long[] values = new long[10];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = Long.parseLong(fields[8 + i]);
+                    }
+                    result.setMetrics(SimulationMetrics.fromArray(values));
+                }
+                finished.put(fields[0] + "\t" + fields[1] + "\t" + fields[2] + "\t" + fields[3], result);
+            } catch (NumberFormatException e) {
+                // Partly written line
+            }
+        }
+        return finished;
+    }
+
+    // Whether the checkpoint's header carries this sweep's fingerprint
+    private boolean fromThisSweep(File checkpoint) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(checkpoint))) {
+            String header = reader.readLine();
+            return header != null && header.equals(CHECKPOINT_HEADER + " " + fingerprint());
+        }
+    }
+
+    /*
+     * Collects the results of every shard's checkpoint into DataExporter reports,
+     * one per algorithm & range. Checkpoints left over from another sweep (other
+     * jobs or settings) are skipped. Returns the files written, or
+     * throws if any job hasn't finished in any shard yet
+     */
+    public List<String> merge() throws IOException {
+        File outputFile = new File(output);
+        File directory = outputFile.getAbsoluteFile().getParentFile();
+        String prefix = outputFile.getName() + ".shard-";
+        String[] checkpoints = directory.list((dir, name) -> name.startsWith(prefix) && name.endsWith(".ckpt"));
+        Map<String, DataExporter.SimulationResult> results = new HashMap<>();
+        if (checkpoints != null) {
+            for (String checkpoint : checkpoints) {
+                File file = new File(directory, checkpoint);
+                if (!fromThisSweep(file)) {
+                    System.out.println("Skipping " + file.getPath() + ": it belongs to a different sweep");
+                    continue;
+                }
+                results.putAll(readCheckpoint(file.getPath()));
+            }
+        }
+
+        Map<String, DataExporter> reports = new LinkedHashMap<>();
+        int missing = 0;
+        for (Job job : jobs) {
+            DataExporter.SimulationResult result = results.get(job.key());
+            if (result == null) {
+                missing++;
+                continue;
+            }
+            reports.computeIfAbsent(job.algorithm + "\t" + job.range, variant -> new DataExporter()).addResult(result);
+        }
+        if (missing > 0) {
+            throw new IOException(missing + " of " + jobs.size() + " jobs have no result in any checkpoint yet");
+        }
+
+        List<String> written = new ArrayList<>();
+        for (Map.Entry<String, DataExporter> report : reports.entrySet()) {
+            String filename = output;
+            if (reports.size() > 1) {
+                String[] variant = report.getKey().split("\t");
+                String base = output.endsWith(".csv") ? output.substring(0, output.length() - 4) : output;
+                filename = base + "_" + variant[0] + "_r" + variant[1] + ".csv";
+            }
+            report.getValue().calculateAllStatistics();
+            report.getValue().exportToCSV(filename);
+            written.add(filename);
+        }
+        return written;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java SweepRunner <spec> [--shard i/N] [--threads T]");
+            System.out.println("       java SweepRunner <spec> --merge");
+            return;
+        }
+        int shard = 0;
+        int shards = 1;
+        int threads = ParallelSweep.configuredParallelism();
+        boolean mergeOnly = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--shard": {
+                    String[] parts = args[++i].split("/");
+                    shard = Integer.parseInt(parts[0]);
+                    shards = Integer.parseInt(parts[1]);
+                    break;
+                }
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--merge": mergeOnly = true; break;
+                default:
+                    System.out.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+        if (shards < 1 || shard < 0 || shard >= shards) {
+            System.out.println("--shard takes i/N with 0 <= i < N");
+            return;
+        }
+
+        try {
+            SweepRunner runner = new SweepRunner(args[0]);
+            boolean complete = mergeOnly;
+            if (!mergeOnly) {
+                complete = runner.runShard(shard, shards, threads) && shards == 1;
+                if (shards > 1) {
+                    System.out.println("Shard finished; run with --merge once every shard is done");
+                } else if (!complete) {
+                    System.out.println("Some jobs failed; run again to retry them");
+                }
+            }
+            if (complete) {
+                for (String file : runner.merge()) {
+                    System.out.println("Results exported to " + file);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Sweep failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            System.out.println("Sweep interrupted; run again to resume");
+        }
+    }
+}